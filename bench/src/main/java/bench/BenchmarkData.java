@@ -0,0 +1,150 @@
+package bench;
+
+import dto.BinMapping;
+import dto.Money;
+import dto.Transaction;
+import dto.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates users, BIN tables and transaction logs for the benchmarks.
+ * Valid transactions pass every rule of the validation chain, invalid ones fail one rule each.
+ */
+final class BenchmarkData {
+    static final int TRANSACTION_COUNT = 4096;
+
+    private static final String[] COUNTRIES = {"EE", "LV", "LT", "FI", "SE", "DE", "FR", "GB", "ES", "IT"};
+    private static final long FIRST_BIN = 4_000_000_000L;
+    private static final long BIN_SPACE = 5_000_000_000L;
+
+    private final Random random;
+    private final List<User> users;
+    private final List<BinMapping> binMappings;
+    private final Map<String, List<BinMapping>> debitBinsByCountry = new HashMap<>();
+    private final List<BinMapping> creditBins = new ArrayList<>();
+
+    BenchmarkData(int userCount, int binCount, long seed) {
+        this.random = new Random(seed);
+        this.users = generateUsers(userCount);
+        this.binMappings = generateBinMappings(binCount);
+    }
+
+    List<User> users() {
+        return users;
+    }
+
+    List<BinMapping> binMappings() {
+        return binMappings;
+    }
+
+    List<String> transactionLines(int count, double invalidShare) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(random.nextDouble() < invalidShare ? invalidLine() : validLine());
+        }
+        return lines;
+    }
+
+    List<Transaction> transactions(int count, double invalidShare) {
+        return transactionLines(count, invalidShare).stream().map(BenchmarkData::toTransaction).toList();
+    }
+
+    static Transaction toTransaction(String line) {
+        String[] values = line.split(",");
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(values[0]);
+        transaction.setUserId(values[1]);
+        transaction.setType(values[2]);
+        transaction.setAmount(Money.parse(values[3]));
+        transaction.setMethod(values[4]);
+        transaction.setAccountNumber(values[5]);
+        return transaction;
+    }
+
+    private List<User> generateUsers(int count) {
+        List<User> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setUserId(DataGenerator.uuid(random));
+            user.setUsername("user" + i);
+            user.setBalance(Money.parse("1000.00"));
+            user.setCountry(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+            user.setFrozen(User.USER_NOT_FROZEN);
+            user.setDepositMin(Money.parse("1.00"));
+            user.setDepositMax(Money.parse("1000.00"));
+            user.setWithdrawMin(Money.parse("1.00"));
+            user.setWithdrawMax(Money.parse("500.00"));
+            result.add(user);
+        }
+        return result;
+    }
+
+    private List<BinMapping> generateBinMappings(int count) {
+        List<BinMapping> result = new ArrayList<>(count);
+        long step = BIN_SPACE / count;
+        for (int i = 0; i < count; i++) {
+            BinMapping bin = new BinMapping();
+            bin.setName("BANK" + i);
+            bin.setRangeFrom(FIRST_BIN + i * step);
+            bin.setRangeTo(FIRST_BIN + i * step + step / 2);
+            bin.setType(random.nextInt(5) == 0 ? BinMapping.CREDIT_CARD : BinMapping.DEBIT_CARD);
+            String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            bin.setCountry(Locale.of("", country).getISO3Country());
+            if (bin.getType().equals(BinMapping.DEBIT_CARD)) {
+                debitBinsByCountry.computeIfAbsent(country, c -> new ArrayList<>()).add(bin);
+            } else {
+                creditBins.add(bin);
+            }
+            result.add(bin);
+        }
+        return result;
+    }
+
+    private String validLine() {
+        User user = users.get(random.nextInt(users.size()));
+        List<BinMapping> bins = debitBinsByCountry.get(user.getCountry());
+        if (bins != null && random.nextBoolean()) {
+            return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_CARD, card(pick(bins)));
+        }
+        return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), true));
+    }
+
+    private String invalidLine() {
+        User user = users.get(random.nextInt(users.size()));
+        switch (random.nextInt(6)) {
+            case 0:
+                return line(DataGenerator.uuid(random), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), true));
+            case 1:
+                return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, "-" + DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), true));
+            case 2:
+                return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), false));
+            case 3:
+                if (!creditBins.isEmpty()) {
+                    return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1, 1000), Transaction.PAYMENT_METHOD_CARD, card(pick(creditBins)));
+                }
+                // Fall through when there are no credit cards
+            case 4:
+                return line(user.getUserId(), Transaction.TRANSACTION_TYPE_DEPOSIT, DataGenerator.amount(random, 1001, 5000), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), true));
+            default:
+                return line(user.getUserId(), Transaction.TRANSACTION_TYPE_WITHDRAW, DataGenerator.amount(random, 1, 400), Transaction.PAYMENT_METHOD_TRANSFER, DataGenerator.iban(random, user.getCountry(), true));
+        }
+    }
+
+    private String line(String userId, String type, String amount, String method, String accountNumber) {
+        return String.join(",", DataGenerator.uuid(random), userId, type, amount, method, accountNumber);
+    }
+
+    private String card(BinMapping bin) {
+        return DataGenerator.card(random, bin.getRangeFrom(), bin.getRangeTo());
+    }
+
+    private BinMapping pick(List<BinMapping> bins) {
+        return bins.get(random.nextInt(bins.size()));
+    }
+}
@@ -0,0 +1,205 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Writes users.csv, transactions.csv and bins.csv of the given size into a scenario directory, see {@link #USAGE}.
+ * Rows are streamed to the files, so the size is only limited by the disk.
+ */
+public class DataGenerator {
+    static final String USAGE = """
+            Usage: DataGenerator <output dir> [options]
+              --users N                number of users (1000)
+              --transactions N         number of transactions (1000000)
+              --bins N                 number of BIN ranges (1000)
+              --duplicate-rate R       share of transactions reusing an earlier id (0.01)
+              --bad-iban-rate R        share of transfers to an IBAN with a wrong checksum (0.01)
+              --credit-card-rate R     share of card payments with a credit card (0.01)
+              --wrong-country-rate R   share of payments with a card or account of another country (0.01)
+              --shared-account-rate R  share of payments with an account of another user (0.01)
+              --seed N                 random seed (42)
+            """;
+
+    private static final String[] COUNTRIES = {"EE", "LV", "LT", "FI", "SE", "DE", "FR", "GB", "ES", "IT", "NL", "PL"};
+    private static final long FIRST_BIN = 4_000_000_000L;
+    private static final long BIN_SPACE = 5_000_000_000L;
+    private static final int ACCOUNTS_PER_USER = 3;
+    private static final int RECENT_IDS = 4096;
+
+    private int userCount = 1000;
+    private long transactionCount = 1_000_000;
+    private int binCount = 1000;
+    private double duplicateRate = 0.01;
+    private double badIbanRate = 0.01;
+    private double creditCardRate = 0.01;
+    private double wrongCountryRate = 0.01;
+    private double sharedAccountRate = 0.01;
+    private long seed = 42;
+
+    private Random random;
+    private final List<String> userIds = new ArrayList<>();
+    private final List<String> userCountries = new ArrayList<>();
+    private final List<String[]> userAccounts = new ArrayList<>();
+    private final Map<String, List<long[]>> debitBinsByCountry = new HashMap<>();
+    private final List<long[]> creditBins = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.out.print(USAGE);
+            System.exit(1);
+        }
+        DataGenerator generator = new DataGenerator();
+        for (int i = 1; i < args.length; i += 2) {
+            generator.set(args[i], args[i + 1]);
+        }
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        generator.generate(directory);
+        System.out.printf("Generated %d users, %d transactions and %d BIN ranges in %s in %.1f s%n",
+                generator.userCount, generator.transactionCount, generator.binCount, directory, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void set(String option, String value) {
+        switch (option) {
+            case "--users" -> userCount = Integer.parseInt(value);
+            case "--transactions" -> transactionCount = Long.parseLong(value);
+            case "--bins" -> binCount = Integer.parseInt(value);
+            case "--duplicate-rate" -> duplicateRate = Double.parseDouble(value);
+            case "--bad-iban-rate" -> badIbanRate = Double.parseDouble(value);
+            case "--credit-card-rate" -> creditCardRate = Double.parseDouble(value);
+            case "--wrong-country-rate" -> wrongCountryRate = Double.parseDouble(value);
+            case "--shared-account-rate" -> sharedAccountRate = Double.parseDouble(value);
+            case "--seed" -> seed = Long.parseLong(value);
+            default -> throw new IllegalArgumentException("Unknown option " + option + "\n" + USAGE);
+        }
+    }
+
+    void generate(Path directory) throws IOException {
+        random = new Random(seed);
+        writeBins(directory.resolve("bins.csv"));
+        writeUsers(directory.resolve("users.csv"));
+        writeTransactions(directory.resolve("transactions.csv"));
+    }
+
+    private void writeBins(Path path) throws IOException {
+        long step = BIN_SPACE / binCount;
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("NAME,RANGE_FROM,RANGE_TO,TYPE,COUNTRY\n");
+            for (int i = 0; i < binCount; i++) {
+                long[] range = {FIRST_BIN + i * step, FIRST_BIN + i * step + step / 2};
+                String country = pick(COUNTRIES);
+                boolean credit = random.nextInt(4) == 0;
+                if (credit) {
+                    creditBins.add(range);
+                } else {
+                    debitBinsByCountry.computeIfAbsent(country, c -> new ArrayList<>()).add(range);
+                }
+                writer.write("BANK" + i + "," + range[0] + "," + range[1] + "," + (credit ? "CC" : "DC") + ","
+                        + Locale.of("", country).getISO3Country() + "\n");
+            }
+        }
+    }
+
+    private void writeUsers(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("USER_ID,USERNAME,BALANCE,COUNTRY,FROZEN,DEPOSIT_MIN,DEPOSIT_MAX,WITHDRAW_MIN,WITHDRAW_MAX\n");
+            for (int i = 0; i < userCount; i++) {
+                String userId = uuid(random);
+                String country = pick(COUNTRIES);
+                userIds.add(userId);
+                userCountries.add(country);
+                String[] accounts = new String[ACCOUNTS_PER_USER];
+                for (int a = 0; a < accounts.length; a++) {
+                    accounts[a] = validAccount(country);
+                }
+                userAccounts.add(accounts);
+                writer.write(String.join(",", userId, "user" + i, amount(random, 0, 5000), country, random.nextInt(20) == 0 ? "1" : "0",
+                        amount(random, 1, 50), amount(random, 1000, 5000), amount(random, 1, 50), amount(random, 500, 3000)) + "\n");
+            }
+        }
+    }
+
+    private void writeTransactions(Path path) throws IOException {
+        String[] recentIds = new String[RECENT_IDS];
+        int storedIds = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER\n");
+            for (long i = 0; i < transactionCount; i++) {
+                String transactionId;
+                if (storedIds > 0 && random.nextDouble() < duplicateRate) {
+                    transactionId = recentIds[random.nextInt(Math.min(storedIds, RECENT_IDS))];
+                } else {
+                    transactionId = uuid(random);
+                    recentIds[storedIds++ % RECENT_IDS] = transactionId;
+                }
+                int user = random.nextInt(userCount);
+                String type = random.nextInt(3) == 0 ? "WITHDRAW" : "DEPOSIT";
+                String account = account(user);
+                String method = Character.isDigit(account.charAt(0)) ? "CARD" : "TRANSFER";
+                writer.write(String.join(",", transactionId, userIds.get(user), type, amount(random, 1, 1000), method, account) + "\n");
+            }
+        }
+    }
+
+    private String account(int user) {
+        double roll = random.nextDouble();
+        if ((roll -= sharedAccountRate) < 0) return pick(userAccounts.get(random.nextInt(userCount)));
+        if ((roll -= badIbanRate) < 0) return iban(random, userCountries.get(user), false);
+        if ((roll -= creditCardRate) < 0 && !creditBins.isEmpty()) return card(creditBins.get(random.nextInt(creditBins.size())));
+        if ((roll -= wrongCountryRate) < 0) return validAccount(pick(COUNTRIES));
+        return pick(userAccounts.get(user));
+    }
+
+    private String validAccount(String country) {
+        List<long[]> bins = debitBinsByCountry.get(country);
+        if (bins != null && random.nextBoolean()) return card(bins.get(random.nextInt(bins.size())));
+        return iban(random, country, true);
+    }
+
+    private String card(long[] range) {
+        return card(random, range[0], range[1]);
+    }
+
+    private <T> T pick(T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    static String card(Random random, long rangeFrom, long rangeTo) {
+        long prefix = rangeFrom + (long) (random.nextDouble() * (rangeTo - rangeFrom));
+        return prefix + String.format("%06d", random.nextInt(1_000_000));
+    }
+
+    /**
+     * @param valid false for an IBAN with wrong check digits
+     */
+    static String iban(Random random, String country, boolean valid) {
+        StringBuilder bban = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            bban.append(random.nextInt(10));
+        }
+        String numeric = bban + String.valueOf(country.charAt(0) - 'A' + 10) + (country.charAt(1) - 'A' + 10) + "00";
+        int check = 98 - new BigInteger(numeric).mod(BigInteger.valueOf(97)).intValue();
+        if (!valid) check = check % 97 + 1;
+        return country + String.format("%02d", check) + bban;
+    }
+
+    static String amount(Random random, int min, int max) {
+        return (min + random.nextInt(max - min)) + "." + String.format("%02d", random.nextInt(100));
+    }
+
+    static String uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+}
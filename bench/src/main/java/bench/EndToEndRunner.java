@@ -0,0 +1,148 @@
+package bench;
+
+import util.HeapPeak;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@code TeldrassilTransactionProcessor.main} on whole scenarios, see {@link #USAGE}, and reports rows per second
+ * and peak heap. Outputs are compared byte for byte with the expected ones, so a faster engine can be checked
+ * against the output of a trusted one. The engine is selected with the usual system properties of this JVM.
+ */
+public class EndToEndRunner {
+    static final String USAGE = """
+            Usage: EndToEndRunner [options] <scenario dir>...
+              A scenario dir contains users.csv, transactions.csv and bins.csv, either directly or in input/.
+              Expected outputs are taken from "output example/" of the scenario, if present.
+              --bins FILE     BIN table for scenarios without one
+              --golden DIR    compare with DIR/<scenario name>/ instead of "output example/"
+              --record DIR    keep the outputs in DIR/<scenario name>/, e.g. to use them as golden outputs later
+              --runs N        runs per scenario, the best one is reported (1)
+            """;
+    private static final String EXPECTED_DIRECTORY = "output example";
+    private static final String[] OUTPUT_FILES = {"balances.csv", "events.csv"};
+    private static final String METRICS_FILE = "metrics.json";
+
+    private Path bins;
+    private Path golden;
+    private Path record;
+    private int runs = 1;
+
+    public static void main(String[] args) throws Exception {
+        EndToEndRunner runner = new EndToEndRunner();
+        List<Path> scenarios = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--bins" -> runner.bins = Path.of(args[++i]);
+                case "--golden" -> runner.golden = Path.of(args[++i]);
+                case "--record" -> runner.record = Path.of(args[++i]);
+                case "--runs" -> runner.runs = Integer.parseInt(args[++i]);
+                default -> scenarios.add(Path.of(args[i]));
+            }
+        }
+        if (scenarios.isEmpty()) {
+            System.out.print(USAGE);
+            System.exit(1);
+        }
+
+        boolean allMatch = true;
+        for (Path scenario : scenarios) {
+            allMatch &= runner.run(scenario);
+        }
+        System.exit(allMatch ? 0 : 2);
+    }
+
+    private boolean run(Path scenario) throws Exception {
+        Path input = Files.isDirectory(scenario.resolve("input")) ? scenario.resolve("input") : scenario;
+        Path binFile = Files.exists(input.resolve("bins.csv")) ? input.resolve("bins.csv") : bins;
+        if (binFile == null) throw new IllegalArgumentException("No bins.csv in " + input + ", use --bins");
+        String name = scenario.toAbsolutePath().normalize().getFileName().toString();
+        Path output = record != null ? record.resolve(name) : Files.createTempDirectory("teldrassil");
+        Files.createDirectories(output);
+
+        long rows = countRows(input.resolve("transactions.csv"));
+        long bestNanos = Long.MAX_VALUE;
+        long peakHeap = 0;
+        for (int i = 0; i < runs; i++) {
+            System.gc();
+            try (HeapPeak heapPeak = new HeapPeak()) {
+                long start = System.nanoTime();
+                invokeMain(input.resolve("users.csv"), input.resolve("transactions.csv"), binFile,
+                        output.resolve(OUTPUT_FILES[0]), output.resolve(OUTPUT_FILES[1]));
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                peakHeap = Math.max(peakHeap, heapPeak.bytes());
+            }
+        }
+
+        Path expected = golden != null ? golden.resolve(name) : scenario.resolve(EXPECTED_DIRECTORY);
+        String comparison = Files.isDirectory(expected) ? compare(expected, output) : "no expected output";
+        System.out.printf("%s: %d rows in %.3f s, %.0f rows/s, peak heap %d MB, %s%n",
+                name, rows, bestNanos / 1e9, rows / (bestNanos / 1e9), peakHeap >> 20, comparison);
+        if (record == null) {
+            for (String file : OUTPUT_FILES) {
+                Files.deleteIfExists(output.resolve(file));
+            }
+            Files.deleteIfExists(output.resolve(METRICS_FILE));
+            Files.deleteIfExists(output);
+        }
+        return comparison.equals("identical") || !Files.isDirectory(expected);
+    }
+
+    private static void invokeMain(Path... paths) throws Exception {
+        Method main = Internals.PROCESSOR.getMethod("main", String[].class);
+        String[] args = Stream.of(paths).map(Path::toString).toArray(String[]::new);
+        try {
+            main.invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static String compare(Path expected, Path actual) throws IOException {
+        List<String> differences = new ArrayList<>();
+        for (String file : OUTPUT_FILES) {
+            long mismatch = Files.mismatch(expected.resolve(file), actual.resolve(file));
+            if (mismatch >= 0) differences.add(String.format("%s differs at line %d", file, lineOf(actual.resolve(file), mismatch)));
+        }
+        return differences.isEmpty() ? "identical" : String.join(", ", differences);
+    }
+
+    private static long lineOf(Path path, long offset) throws IOException {
+        long line = 1;
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[1 << 16];
+            long position = 0;
+            int read;
+            while (position < offset && (read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read && position < offset; i++, position++) {
+                    if (buffer[i] == '\n') line++;
+                }
+            }
+        }
+        return line;
+    }
+
+    private static long countRows(Path path) throws IOException {
+        long lines = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') lines++;
+                }
+            }
+        }
+        // Header line
+        return Math.max(0, lines - 1);
+    }
+}
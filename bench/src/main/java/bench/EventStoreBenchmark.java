@@ -0,0 +1,79 @@
+package bench;
+
+import dto.DeclineReason;
+import dto.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.EventSink;
+import util.EventStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the events of a transaction in the event store, for ids that are in it and ids that are not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventStoreBenchmark {
+    @Param({"1000000"})
+    public int eventCount;
+
+    private String[] transactionIds;
+    private int next;
+    private Path file;
+    private EventStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        transactionIds = new String[BenchmarkData.TRANSACTION_COUNT];
+        file = Files.createTempFile("events", EventStore.SUFFIX);
+        try (EventSink sink = EventStore.writeAlongside(new NullEventSink(), file)) {
+            for (int i = 0; i < eventCount; i++) {
+                String transactionId = new UUID(random.nextLong(), random.nextLong()).toString();
+                if (i < transactionIds.length) transactionIds[i] = transactionId;
+                if (random.nextBoolean()) {
+                    sink.declined(transactionId, DeclineReason.OVER_DEPOSIT_LIMIT, Money.ofCents(random.nextInt(1_000_000)), Money.ofCents(100_000));
+                } else {
+                    sink.approved(transactionId);
+                }
+            }
+        }
+        store = EventStore.open(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Object find() {
+        return store.find(transactionIds[next++ & (BenchmarkData.TRANSACTION_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Object findMissing() {
+        return store.find(transactionIds[next++ & (BenchmarkData.TRANSACTION_COUNT - 1)] + "x");
+    }
+}
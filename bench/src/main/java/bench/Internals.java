@@ -0,0 +1,47 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Access to processor internals. The processor classes are in the default package, which can not be imported,
+ * and most of the measured methods are private, so benchmarks call them through method handles.
+ */
+final class Internals {
+    static final Class<?> PROCESSOR = type("TeldrassilTransactionProcessor");
+    static final Class<?> PRE_VALIDATOR = type("TransactionPreValidator");
+    static final Class<?> VALIDATION_CONTEXT = type("ValidationContext");
+
+    private Internals() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(String.format("Can not find class %s", name), e);
+        }
+    }
+
+    static MethodHandle method(Class<?> owner, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = owner.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Can not access method %s.%s", owner.getName(), name), e);
+        }
+    }
+
+    static MethodHandle constructor(Class<?> owner, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = owner.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("Can not access constructor of %s", owner.getName()), e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package bench;
+
+import dto.DeclineReason;
+import dto.Event;
+import util.EventSink;
+
+/**
+ * Drops all events, so validators can be measured without the cost of the output.
+ */
+final class NullEventSink implements EventSink {
+    @Override
+    public void accept(Event event) {
+    }
+
+    @Override
+    public void approved(String transactionId) {
+    }
+
+    @Override
+    public void declined(String transactionId, DeclineReason reason, Object... args) {
+    }
+}
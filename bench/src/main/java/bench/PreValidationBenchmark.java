@@ -0,0 +1,125 @@
+package bench;
+
+import dto.Transaction;
+import dto.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.BinIndex;
+import util.UserIndex;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stateless rules of the validation chain: user lookup, IBAN, BIN lookup, card type and country.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreValidationBenchmark {
+    private static final Class<?> PRE_VALIDATOR = Internals.PRE_VALIDATOR;
+    private static final MethodHandle NEW_PRE_VALIDATOR = Internals.constructor(PRE_VALIDATOR, UserIndex.class, BinIndex.class);
+    private static final MethodHandle PRE_VALIDATE = Internals.method(PRE_VALIDATOR, "preValidate", Transaction.class);
+    private static final Class<?> CONTEXT = Internals.VALIDATION_CONTEXT;
+    private static final MethodHandle NEW_CONTEXT = Internals.constructor(CONTEXT, BinIndex.class);
+    private static final MethodHandle RESET_CONTEXT = Internals.method(CONTEXT, "reset", Transaction.class, User.class, int.class);
+    private static final MethodHandle BIN = Internals.method(CONTEXT, "bin");
+    private static final MethodHandle VALIDATE_IBAN = Internals.method(PRE_VALIDATOR, "validateIBAN", CONTEXT);
+    private static final MethodHandle VALIDATE_DEBIT_CARD = Internals.method(PRE_VALIDATOR, "validateOnlyDebitCardPayment", CONTEXT);
+    private static final MethodHandle VALIDATE_COUNTRY = Internals.method(PRE_VALIDATOR, "validateCountry", CONTEXT);
+
+    @Param({"100", "10000"})
+    public int userCount;
+
+    @Param({"100", "10000"})
+    public int binCount;
+
+    @Param({"0.0", "0.5"})
+    public double invalidShare;
+
+    private UserIndex userIndex;
+    private Object preValidator;
+    private Object context;
+    private Transaction[] transactions;
+    private Transaction[] transfers;
+    private Transaction[] cards;
+    private User user;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        BenchmarkData data = new BenchmarkData(userCount, binCount, 42);
+        BinIndex binIndex = new BinIndex(data.binMappings());
+        userIndex = new UserIndex(data.users());
+        preValidator = NEW_PRE_VALIDATOR.invoke(userIndex, binIndex);
+        context = NEW_CONTEXT.invoke(binIndex);
+        List<Transaction> generated = data.transactions(BenchmarkData.TRANSACTION_COUNT * 2, invalidShare);
+        transactions = generated.subList(0, BenchmarkData.TRANSACTION_COUNT).toArray(Transaction[]::new);
+        transfers = fill(generated, Transaction.PAYMENT_METHOD_TRANSFER);
+        cards = fill(generated, Transaction.PAYMENT_METHOD_CARD);
+        // Rules only read the country of the user
+        user = data.users().get(0);
+    }
+
+    private static Transaction[] fill(List<Transaction> transactions, String method) {
+        List<Transaction> matching = transactions.stream().filter(t -> t.getMethod().equals(method)).toList();
+        Transaction[] result = new Transaction[BenchmarkData.TRANSACTION_COUNT];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matching.get(i % matching.size());
+        }
+        return result;
+    }
+
+    private int nextIndex() {
+        return next++ & (BenchmarkData.TRANSACTION_COUNT - 1);
+    }
+
+    // Rules get a fresh context per transaction, as in the validation chain
+    private Object context(Transaction transaction) throws Throwable {
+        return RESET_CONTEXT.invoke(context, transaction, user, 0);
+    }
+
+    @Benchmark
+    public Object preValidate() throws Throwable {
+        return PRE_VALIDATE.invoke(preValidator, transactions[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object getUserIfExistsAndNotFrozen() {
+        return userIndex.activeUser(userIndex.symbolOf(transactions[nextIndex()].getUserId()));
+    }
+
+    @Benchmark
+    public Object validateIban() throws Throwable {
+        return VALIDATE_IBAN.invoke(preValidator, context(transfers[nextIndex()]));
+    }
+
+    @Benchmark
+    public Object binLookup() throws Throwable {
+        return BIN.invoke(context(cards[nextIndex()]));
+    }
+
+    @Benchmark
+    public Object validateOnlyDebitCardPayment() throws Throwable {
+        return VALIDATE_DEBIT_CARD.invoke(preValidator, context(cards[nextIndex()]));
+    }
+
+    @Benchmark
+    public Object validateCountry() throws Throwable {
+        return VALIDATE_COUNTRY.invoke(preValidator, context(transactions[nextIndex()]));
+    }
+}
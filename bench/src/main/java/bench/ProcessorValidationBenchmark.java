@@ -0,0 +1,121 @@
+package bench;
+
+import dto.Transaction;
+import dto.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.BinIndex;
+import util.EventSink;
+import util.UserIndex;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rules of the validation chain that depend on the processor state. Before measuring, the first half of the
+ * transactions is processed, so about half of the measured ones hit a known id and a known account.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorValidationBenchmark {
+    private static final Class<?> PROCESSOR = Internals.PROCESSOR;
+    private static final MethodHandle NEW_PROCESSOR = Internals.constructor(PROCESSOR, UserIndex.class, BinIndex.class, EventSink.class);
+    private static final MethodHandle PROCESS_TRANSACTION = Internals.method(PROCESSOR, "processTransaction", Transaction.class);
+    private static final Class<?> CONTEXT = Internals.VALIDATION_CONTEXT;
+    private static final MethodHandle NEW_CONTEXT = Internals.constructor(CONTEXT, BinIndex.class);
+    private static final MethodHandle RESET_CONTEXT = Internals.method(CONTEXT, "reset", Transaction.class, User.class, int.class);
+    private static final MethodHandle VALIDATE_UNIQUE_ID = Internals.method(PROCESSOR, "validateUniqueId", Transaction.class);
+    private static final MethodHandle VALIDATE_USER_LIMITS = Internals.method(PROCESSOR, "validateUserLimits", CONTEXT);
+    private static final MethodHandle VALIDATE_ENOUGH_FOR_WITHDRAW = Internals.method(PROCESSOR, "validateEnoughForWithdraw", CONTEXT);
+    private static final MethodHandle VALIDATE_WITHDRAW_FROM_EXISTING_ACCOUNT = Internals.method(PROCESSOR, "validateWithdrawFromExistingAccount", CONTEXT);
+    private static final MethodHandle VALIDATE_CORRECT_USER_ACCOUNT = Internals.method(PROCESSOR, "validateCorrectUserAccount", CONTEXT);
+
+    @Param({"100", "10000"})
+    public int userCount;
+
+    @Param({"1000"})
+    public int binCount;
+
+    @Param({"0.0", "0.5"})
+    public double invalidShare;
+
+    private Object processor;
+    private Object context;
+    private Transaction[] transactions;
+    private User[] users;
+    private int[] userSymbols;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        BenchmarkData data = new BenchmarkData(userCount, binCount, 42);
+        BinIndex binIndex = new BinIndex(data.binMappings());
+        UserIndex userIndex = new UserIndex(data.users());
+        processor = NEW_PROCESSOR.invoke(userIndex, binIndex, new NullEventSink());
+        context = NEW_CONTEXT.invoke(binIndex);
+        transactions = data.transactions(BenchmarkData.TRANSACTION_COUNT, invalidShare).toArray(Transaction[]::new);
+
+        Map<String, User> usersById = new HashMap<>();
+        data.users().forEach(user -> usersById.put(user.getUserId(), user));
+        users = new User[transactions.length];
+        userSymbols = new int[transactions.length];
+        for (int i = 0; i < transactions.length; i++) {
+            // Transactions of unknown users are checked against some existing user
+            users[i] = usersById.getOrDefault(transactions[i].getUserId(), data.users().get(0));
+            userSymbols[i] = userIndex.symbolOf(users[i].getUserId());
+            if (i < transactions.length / 2) PROCESS_TRANSACTION.invoke(processor, transactions[i]);
+        }
+    }
+
+    private int nextIndex() {
+        return next++ & (BenchmarkData.TRANSACTION_COUNT - 1);
+    }
+
+    // Rules get a fresh context per transaction, as in the validation chain
+    private Object nextContext() throws Throwable {
+        int i = nextIndex();
+        return RESET_CONTEXT.invoke(context, transactions[i], users[i], userSymbols[i]);
+    }
+
+    @Benchmark
+    public boolean validateUniqueId() throws Throwable {
+        return (boolean) VALIDATE_UNIQUE_ID.invoke(processor, transactions[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean validateUserLimits() throws Throwable {
+        return (boolean) VALIDATE_USER_LIMITS.invoke(processor, nextContext());
+    }
+
+    @Benchmark
+    public boolean validateEnoughForWithdraw() throws Throwable {
+        return (boolean) VALIDATE_ENOUGH_FOR_WITHDRAW.invoke(processor, nextContext());
+    }
+
+    @Benchmark
+    public boolean validateWithdrawFromExistingAccount() throws Throwable {
+        return (boolean) VALIDATE_WITHDRAW_FROM_EXISTING_ACCOUNT.invoke(processor, nextContext());
+    }
+
+    @Benchmark
+    public boolean validateCorrectUserAccount() throws Throwable {
+        return (boolean) VALIDATE_CORRECT_USER_ACCOUNT.invoke(processor, nextContext());
+    }
+}
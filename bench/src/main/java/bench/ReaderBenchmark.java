@@ -0,0 +1,104 @@
+package bench;
+
+import dto.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.ColumnarTransactions;
+import util.MappedTransactionReader;
+import util.RejectLog;
+import util.RejectSink;
+import util.TransactionSource;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of transaction lines, one line at a time and a whole file through the memory-mapped reader, compared with
+ * reading the same file converted to the columnar format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+    private static final MethodHandle PROCESS_TRANSACTION = Internals.method(
+            Internals.type("util.Reader"), "processTransaction", String.class, String.class, long.class, RejectSink.class);
+
+    @Param({"1000"})
+    public int userCount;
+
+    @Param({"0.0", "0.5"})
+    public double invalidShare;
+
+    private String[] lines;
+    private int next;
+    private Path file;
+    private Path columnarFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(userCount, 1000, 42);
+        lines = data.transactionLines(BenchmarkData.TRANSACTION_COUNT, invalidShare).toArray(String[]::new);
+
+        List<String> fileLines = new ArrayList<>();
+        fileLines.add("TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER");
+        fileLines.addAll(data.transactionLines(100_000, invalidShare));
+        file = Files.createTempFile("transactions", ".csv");
+        Files.write(file, fileLines);
+        columnarFile = Files.createTempFile("transactions", ColumnarTransactions.SUFFIX);
+        ColumnarTransactions.convert(file, columnarFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(columnarFile);
+    }
+
+    @Benchmark
+    public Object processTransaction() throws Throwable {
+        String line = lines[next++ & (BenchmarkData.TRANSACTION_COUNT - 1)];
+        return PROCESS_TRANSACTION.invoke(line, "transactions.csv", 2L, RejectLog.shared());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void readMappedFile(Blackhole blackhole) {
+        try (MappedTransactionReader reader = new MappedTransactionReader(file)) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                blackhole.consume(transaction);
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void readColumnarFile(Blackhole blackhole) {
+        try (TransactionSource source = ColumnarTransactions.open(columnarFile)) {
+            Transaction transaction;
+            while ((transaction = source.next()) != null) {
+                blackhole.consume(transaction);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import dto.DeclineReason;
+import dto.Event;
+import dto.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.EventLog;
+import util.Writer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing of the events file and formatting of amounts in decline messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+    private static final int EVENT_COUNT = 10_000;
+
+    @Param({"0.0", "0.5"})
+    public double invalidShare;
+
+    private List<Event> events;
+    private EventLog eventLog;
+    private Money[] amounts;
+    private final StringBuilder builder = new StringBuilder();
+    private int next;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        eventLog = new EventLog();
+        amounts = new Money[BenchmarkData.TRANSACTION_COUNT];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Money.ofCents(random.nextInt(1_000_000));
+        }
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            String transactionId = new UUID(random.nextLong(), random.nextLong()).toString();
+            if (random.nextDouble() < invalidShare) {
+                eventLog.declined(transactionId, DeclineReason.OVER_DEPOSIT_LIMIT, amounts[i % amounts.length], amounts[(i + 1) % amounts.length]);
+            } else {
+                eventLog.approved(transactionId);
+            }
+        }
+        events = new ArrayList<>(EVENT_COUNT);
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events.add(eventLog.get(i));
+        }
+        file = Files.createTempFile("events", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void writeEvents() {
+        Writer.writeEvents(file, events);
+    }
+
+    @Benchmark
+    public void writeEventLog() {
+        Writer.writeEvents(file, eventLog);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String formatAmount() {
+        return amounts[next++ & (BenchmarkData.TRANSACTION_COUNT - 1)].toString();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public StringBuilder appendAmount() {
+        builder.setLength(0);
+        return amounts[next++ & (BenchmarkData.TRANSACTION_COUNT - 1)].appendTo(builder);
+    }
+}
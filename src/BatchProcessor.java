@@ -0,0 +1,193 @@
+import dto.User;
+import util.AccountOwners;
+import util.BinIndex;
+import util.Metrics;
+import util.Reader;
+import util.TransactionIdSet;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Processes many transactions files in one JVM, users and BIN table are loaded only once, see {@link #USAGE}.
+ * By default the files are processed one after another in the order of their names and every file continues from
+ * the balances, account owners and transaction ids the previous ones left, as if they were parts of one file.
+ * Independent files, e.g. of different regions, all start from the users file and are processed in parallel.
+ * For every file {@code <name>.csv}, {@code <name>.csv.gz} or {@code <name>.tcol} the output directory gets
+ * {@code <name>.balances.csv}, {@code <name>.events.csv} and {@code <name>.metrics.json}.
+ */
+final class BatchProcessor {
+    static final String USAGE = """
+            Usage: BatchProcessor <users file> <BIN mappings file> <transactions> <output dir> [--independent] [--watch]
+              <transactions> is a directory, all *.csv, *.csv.gz and *.tcol files in it are processed, or a glob of file names
+              in a directory, e.g. backups/transactions-*.csv
+              --independent  every file starts from the users file, files are processed in parallel
+              --watch        keep running and also process files that are moved into the directory later
+            """;
+    private static final int THREADS = Integer.getInteger("teldrassil.batch.threads", Runtime.getRuntime().availableProcessors());
+    private static final String DEFAULT_PATTERN = "*.{csv,csv.gz,tcol}";
+    private static final String BALANCES_SUFFIX = ".balances.csv";
+    private static final String EVENTS_SUFFIX = ".events.csv";
+    private static final String METRICS_SUFFIX = ".metrics.json";
+
+    private final UserIndex users;
+    private final BinIndex binIndex;
+    private final Path outputDirectory;
+    private final boolean independent;
+    private final AccountOwners userAccounts = new AccountOwners();
+    private final TransactionIdSet processedTransactionIds = new TransactionIdSet();
+    private final Set<Path> processedFiles = new HashSet<>();
+
+    BatchProcessor(final List<User> users, final BinIndex binIndex, final Path outputDirectory, boolean independent) {
+        this.users = new UserIndex(users);
+        this.binIndex = binIndex;
+        this.outputDirectory = outputDirectory;
+        this.independent = independent;
+    }
+
+    public static void main(final String[] args) {
+        List<String> paths = new ArrayList<>();
+        boolean independent = false;
+        boolean watch = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "--independent" -> independent = true;
+                case "--watch" -> watch = true;
+                default -> paths.add(arg);
+            }
+        }
+        if (paths.size() != 4) {
+            System.out.print(USAGE);
+            throw new RuntimeException("Wrong number of file paths provided. Expected: 4. Actual: " + paths.size());
+        }
+
+        Path transactions = Paths.get(paths.get(2));
+        Path directory = Files.isDirectory(transactions) ? transactions
+                : transactions.toAbsolutePath().getParent();
+        String pattern = Files.isDirectory(transactions) ? DEFAULT_PATTERN : transactions.getFileName().toString();
+        PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + pattern);
+        Path outputDirectory = Paths.get(paths.get(3));
+        try {
+            Files.createDirectories(outputDirectory);
+            if (Files.isSameFile(directory, outputDirectory)) {
+                throw new RuntimeException(String.format("Output directory %s must differ from the transactions directory", outputDirectory));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to directory %s", outputDirectory), e);
+        }
+
+        List<User> users = Reader.readUsers(Paths.get(paths.get(0)));
+        BinIndex binIndex = TeldrassilTransactionProcessor.readBinIndex(Paths.get(paths.get(1)));
+        BatchProcessor batchProcessor = new BatchProcessor(users, binIndex, outputDirectory, independent);
+        if (watch) {
+            batchProcessor.watch(directory, matcher);
+        } else {
+            batchProcessor.process(listFiles(directory, matcher));
+        }
+    }
+
+    /**
+     * Processes the files that were not processed before.
+     */
+    void process(List<Path> files) {
+        List<Path> newFiles = files.stream().filter(file -> processedFiles.add(file.toAbsolutePath().normalize())).toList();
+        if (!independent) {
+            for (Path file : newFiles) {
+                processFile(file, users, userAccounts, processedTransactionIds);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Path file : newFiles) {
+                tasks.add(pool.submit(() -> processFile(file, new UserIndex(copyOf(users.getUsers())), new AccountOwners(), new TransactionIdSet())));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes the files in the directory and then every file that appears in it until the process is stopped.
+     * Files have to be complete when they appear, i.e. be moved into the directory rather than written there.
+     */
+    void watch(Path directory, PathMatcher matcher) {
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            // Registered first, so a file that arrives meanwhile is either listed here or reported by the service
+            process(listFiles(directory, matcher));
+            WatchKey key;
+            do {
+                key = watchService.take();
+                boolean arrived = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    arrived |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || matcher.matches(((Path) event.context()).getFileName());
+                }
+                // Listing again keeps the order of names also for files that arrived together
+                if (arrived) process(listFiles(directory, matcher));
+            } while (key.reset());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not watch directory %s", directory), e);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processFile(Path file, UserIndex users, AccountOwners userAccounts,
+                             TransactionIdSet processedTransactionIds) {
+        String name = file.getFileName().toString().replaceFirst("(\\.csv)?(\\.gz)?(\\.tcol)?$", "");
+        Metrics metrics = new Metrics();
+        TeldrassilTransactionProcessor transactionProcessor = TeldrassilTransactionProcessor.processFile(
+                users, binIndex, metrics, file, 0, Long.MAX_VALUE, outputDirectory.resolve(name + EVENTS_SUFFIX),
+                userAccounts, processedTransactionIds);
+        metrics.time("writeBalances", () -> Writer.writeBalances(outputDirectory.resolve(name + BALANCES_SUFFIX), users.getUsers()));
+        transactionProcessor.writeMetrics(metrics, outputDirectory.resolve(name + METRICS_SUFFIX));
+        System.out.printf("Processed %s%n", file);
+    }
+
+    private static List<Path> listFiles(Path directory, PathMatcher matcher) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> matcher.matches(file.getFileName()) && Files.isRegularFile(file)).sorted().toList();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read directory %s", directory), e);
+        }
+    }
+
+    private static List<User> copyOf(List<User> users) {
+        List<User> copies = new ArrayList<>(users.size());
+        for (User user : users) {
+            User copy = new User();
+            copy.setUserId(user.getUserId());
+            copy.setUsername(user.getUsername());
+            copy.setBalance(user.getBalance());
+            copy.setCountry(user.getCountry());
+            copy.setFrozen(user.getFrozen());
+            copy.setDepositMin(user.getDepositMin());
+            copy.setDepositMax(user.getDepositMax());
+            copy.setWithdrawMin(user.getWithdrawMin());
+            copy.setWithdrawMax(user.getWithdrawMax());
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,252 @@
+import dto.Transaction;
+import util.AccountOwners;
+import util.BinIndex;
+import util.EventLog;
+import util.TransactionIdSet;
+import util.TransactionSource;
+import util.UserIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Processes independent parts of the transaction log concurrently.
+ * A transaction changes the state of one user and one account only, so the log is split into connected
+ * components of the user-account graph and every component is processed by its own processor.
+ * Transaction ids are the only other shared state: occurrences of an id are kept in one component
+ * as long as the outcome of a later occurrence depends on whether an earlier one produced an event.
+ * Needs the whole log in memory.
+ */
+class PartitionedProcessor {
+    private static final int STATIC_OUTCOME = -1;
+
+    private final UserIndex users;
+    private final BinIndex binIndex;
+    private final int threads;
+
+    PartitionedProcessor(final UserIndex users, final BinIndex binIndex, int threads) {
+        this.users = users;
+        this.binIndex = binIndex;
+        this.threads = threads;
+    }
+
+    void process(TransactionSource source, TeldrassilTransactionProcessor processor) {
+        List<Transaction> transactions = new ArrayList<>();
+        Transaction transaction;
+        while ((transaction = source.next()) != null) {
+            transactions.add(transaction);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            TransactionPreValidator.Result[] preValidation = preValidate(pool, transactions, processor);
+            boolean[] knownDuplicate = new boolean[transactions.size()];
+            int[] component = partition(transactions, preValidation, knownDuplicate, processor);
+
+            // Every transaction has at most one event, it is found by the log of its part and the index in that log
+            List<int[]> parts = groupByComponent(component);
+            EventLog[] logs = new EventLog[parts.size() + 1];
+            AccountOwners[] owners = new AccountOwners[parts.size()];
+            int[] logOf = new int[transactions.size()];
+            int[] eventIndex = new int[transactions.size()];
+            List<ForkJoinTask<TeldrassilTransactionProcessor>> tasks = new ArrayList<>();
+            for (int p = 0; p < parts.size(); p++) {
+                int part = p;
+                logs[part] = new EventLog();
+                owners[part] = new AccountOwners();
+                tasks.add(pool.submit(() -> processPart(transactions, preValidation, parts.get(part), processor, logs[part], owners[part], part, logOf, eventIndex)));
+            }
+            logs[parts.size()] = new EventLog();
+            processor.addValidatorCounts(
+                    processStatic(transactions, preValidation, component, knownDuplicate, logs[parts.size()], parts.size(), logOf, eventIndex));
+            // Parts read the account owners of the main processor, so they are only merged once every part is done
+            List<TeldrassilTransactionProcessor> partProcessors = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<TeldrassilTransactionProcessor> task : tasks) {
+                partProcessors.add(task.join());
+            }
+            for (int part = 0; part < partProcessors.size(); part++) {
+                processor.addValidatorCounts(partProcessors.get(part));
+                processor.addAccountOwners(owners[part]);
+            }
+
+            for (int i = 0; i < transactions.size(); i++) {
+                processor.commitResult(logs[logOf[i]], eventIndex[i]);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private TransactionPreValidator.Result[] preValidate(ForkJoinPool pool, List<Transaction> transactions,
+                                                       TeldrassilTransactionProcessor processor) {
+        ThreadLocal<TransactionPreValidator> preValidators = ThreadLocal.withInitial(processor::newPreValidator);
+        TransactionPreValidator.Result[] results = new TransactionPreValidator.Result[transactions.size()];
+        pool.submit(() -> IntStream.range(0, transactions.size()).parallel()
+                .forEach(i -> results[i] = preValidators.get().preValidate(transactions.get(i)))).join();
+        return results;
+    }
+
+    /**
+     * @return component of every transaction, or {@link #STATIC_OUTCOME} if its outcome does not depend on any state
+     */
+    private int[] partition(List<Transaction> transactions, TransactionPreValidator.Result[] preValidation, boolean[] knownDuplicate,
+                            TeldrassilTransactionProcessor processor) {
+        int size = transactions.size();
+        UnionFind components = new UnionFind(size * 2);
+        int[] userNodes = new int[users.symbolCount()];
+        Arrays.fill(userNodes, -1);
+        Map<String, Integer> accountNodes = new HashMap<>();
+        int[] node = new int[size];
+        for (int i = 0; i < size; i++) {
+            int user = preValidation[i].userSymbol;
+            if (preValidation[i].user == null) {
+                node[i] = STATIC_OUTCOME;
+                continue;
+            }
+            if (userNodes[user] < 0) userNodes[user] = components.add();
+            node[i] = userNodes[user];
+            components.union(node[i], accountNodes.computeIfAbsent(transactions.get(i).getAccountNumber(), a -> components.add()));
+        }
+
+        // An occurrence of an id is a duplicate if any earlier occurrence produced an event, also in an earlier run. That is
+        // certain once an occurrence that always produces one is seen, before that all occurrences have to be processed together.
+        TransactionIdSet seenIds = new TransactionIdSet(size);
+        Set<String> repeatedIds = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            if (!seenIds.add(transaction.getTransactionId())) repeatedIds.add(transaction.getTransactionId());
+        }
+        Map<String, Integer> openGroups = new HashMap<>();
+        Set<String> settledIds = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            String id = transactions.get(i).getTransactionId();
+            if (!repeatedIds.contains(id) && !processor.isProcessed(id)) continue;
+            if (settledIds.contains(id) || processor.isProcessed(id)) {
+                if (node[i] != STATIC_OUTCOME) knownDuplicate[i] = true;
+                continue;
+            }
+            if (node[i] != STATIC_OUTCOME) {
+                Integer group = openGroups.putIfAbsent(id, node[i]);
+                if (group != null) components.union(group, node[i]);
+            }
+            if (alwaysProducesEvent(preValidation[i])) settledIds.add(id);
+        }
+
+        int[] component = new int[size];
+        for (int i = 0; i < size; i++) {
+            component[i] = node[i] == STATIC_OUTCOME || knownDuplicate[i] ? STATIC_OUTCOME : components.find(node[i]);
+        }
+        return component;
+    }
+
+    private boolean alwaysProducesEvent(TransactionPreValidator.Result preValidation) {
+        return preValidation.user == null
+                || preValidation.failedRule == TransactionPreValidator.RULE_NONE
+                || preValidation.reason != null;
+    }
+
+    // Components are packed into parts of similar size, indices in every part keep the original order
+    private List<int[]> groupByComponent(int[] component) {
+        int[] offsets = new int[component.length * 2 + 1];
+        for (int c : component) {
+            if (c != STATIC_OUTCOME) offsets[c + 1]++;
+        }
+        for (int c = 1; c < offsets.length; c++) {
+            offsets[c] += offsets[c - 1];
+        }
+        int[] sorted = new int[offsets[offsets.length - 1]];
+        int[] next = offsets.clone();
+        for (int i = 0; i < component.length; i++) {
+            if (component[i] != STATIC_OUTCOME) sorted[next[component[i]]++] = i;
+        }
+
+        int targetSize = Math.max(1, sorted.length / (threads * 8));
+        List<int[]> parts = new ArrayList<>();
+        int partStart = 0;
+        for (int c = 0; c < offsets.length - 1; c++) {
+            if (offsets[c + 1] - partStart >= targetSize) {
+                parts.add(Arrays.copyOfRange(sorted, partStart, offsets[c + 1]));
+                partStart = offsets[c + 1];
+            }
+        }
+        if (partStart < sorted.length) parts.add(Arrays.copyOfRange(sorted, partStart, sorted.length));
+        return parts;
+    }
+
+    // Account owners from earlier runs are taken over from the main processor, it is only read while parts are running
+    private TeldrassilTransactionProcessor processPart(List<Transaction> transactions, TransactionPreValidator.Result[] preValidation, int[] part,
+                                                       TeldrassilTransactionProcessor base, EventLog log, AccountOwners owners, int logIndex, int[] logOf, int[] eventIndex) {
+        TeldrassilTransactionProcessor processor = new TeldrassilTransactionProcessor(users, binIndex, log, owners, new TransactionIdSet());
+        for (int i : part) {
+            processor.copyAccountOwner(base, transactions.get(i).getAccountNumber());
+        }
+        for (int i : part) {
+            int size = log.size();
+            processor.commitTransaction(transactions.get(i), preValidation[i]);
+            logOf[i] = logIndex;
+            eventIndex[i] = log.size() > size ? size : -1;
+        }
+        return processor;
+    }
+
+    private TeldrassilTransactionProcessor processStatic(List<Transaction> transactions, TransactionPreValidator.Result[] preValidation, int[] component,
+                                                         boolean[] knownDuplicate, EventLog log, int logIndex, int[] logOf, int[] eventIndex) {
+        TeldrassilTransactionProcessor processor = new TeldrassilTransactionProcessor(users, binIndex, log);
+        for (int i = 0; i < component.length; i++) {
+            if (component[i] != STATIC_OUTCOME) continue;
+            int size = log.size();
+            if (knownDuplicate[i]) {
+                processor.commitDuplicate(transactions.get(i));
+            } else {
+                processor.commitTransaction(transactions.get(i), preValidation[i]);
+            }
+            logOf[i] = logIndex;
+            eventIndex[i] = log.size() > size ? size : -1;
+        }
+        return processor;
+    }
+
+    private static class UnionFind {
+        private final int[] parent;
+        private final int[] rank;
+        private int size;
+
+        private UnionFind(int capacity) {
+            parent = new int[capacity];
+            rank = new int[capacity];
+        }
+
+        private int add() {
+            parent[size] = size;
+            return size++;
+        }
+
+        private int find(int node) {
+            while (parent[node] != node) {
+                parent[node] = parent[parent[node]];
+                node = parent[node];
+            }
+            return node;
+        }
+
+        private void union(int a, int b) {
+            a = find(a);
+            b = find(b);
+            if (a == b) return;
+            if (rank[a] < rank[b]) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+            parent[b] = a;
+            if (rank[a] == rank[b]) rank[a]++;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import dto.DeclineReason;
+import dto.Event;
+import dto.Transaction;
+import util.EventLog;
+import util.EventSink;
+import util.Metrics;
+import util.RingBuffer;
+import util.TransactionSource;
+
+/**
+ * Reads, processes and writes on three threads connected by two bounded rings of preallocated batches:
+ * a reader thread fills batches of transactions, the calling thread processes them one by one in the original order
+ * and collects their events into batches of events, which a writer thread passes on to the events sink.
+ * A stage that is faster than the next one stalls once the ring between them is full, which bounds the memory.
+ */
+class PipelinedProcessor {
+    private final int batchSize;
+    private final EventSink events;
+    private final RingBuffer<Transaction[]> transactionBatches;
+    private final RingBuffer<EventLog> eventBatches;
+    private final BatchSink batchSink = new BatchSink();
+    private volatile Throwable failure;
+
+    /**
+     * @param batchCount number of batches in every ring
+     * @param events     sink the writer thread passes the events on to
+     */
+    PipelinedProcessor(int batchSize, int batchCount, final EventSink events) {
+        this.batchSize = batchSize;
+        this.events = events;
+        // A batch of transactions ends at the first null
+        this.transactionBatches = new RingBuffer<>(batchCount, () -> new Transaction[batchSize]);
+        this.eventBatches = new RingBuffer<>(batchCount, EventLog::new);
+    }
+
+    /**
+     * @return sink for the processor, it collects the events of the current batch
+     */
+    EventSink getEventSink() {
+        return batchSink;
+    }
+
+    /**
+     * @param processor has to send its events to {@link #getEventSink()}
+     */
+    void process(TransactionSource transactions, TeldrassilTransactionProcessor processor, Metrics metrics) {
+        Thread reader = start("pipeline reader", () -> read(transactions));
+        Thread writer = start("pipeline writer", this::write);
+        boolean claimed = false;
+        try {
+            Transaction[] batch;
+            while ((batch = transactionBatches.take()) != null) {
+                batchSink.log = eventBatches.claim();
+                if (batchSink.log == null) break;
+                claimed = true;
+                batchSink.log.clear();
+                for (int i = 0; i < batchSize && batch[i] != null; i++) {
+                    processor.processTransaction(batch[i]);
+                }
+                eventBatches.publish();
+                claimed = false;
+                transactionBatches.release();
+            }
+        } catch (RuntimeException | Error e) {
+            // Events of the transactions processed so far are still written, like with the other engines
+            if (claimed) eventBatches.publish();
+            fail(e);
+            transactionBatches.abort();
+        } finally {
+            eventBatches.close();
+            join(reader);
+            join(writer);
+        }
+        if (failure instanceof RuntimeException e) throw e;
+        if (failure instanceof Error e) throw e;
+
+        metrics.setStallTimes(
+                transactionBatches.getProducerStallNanos(),
+                transactionBatches.getConsumerStallNanos() + eventBatches.getProducerStallNanos(),
+                eventBatches.getConsumerStallNanos());
+    }
+
+    // A failure ends the batches early, the ones read before are still processed
+    private void read(TransactionSource transactions) {
+        try {
+            Transaction[] batch;
+            while ((batch = transactionBatches.claim()) != null) {
+                int size = 0;
+                while (size < batchSize && (batch[size] = transactions.next()) != null) {
+                    size++;
+                }
+                if (size < batchSize) batch[size] = null;
+                if (size > 0) transactionBatches.publish();
+                if (size < batchSize) break;
+            }
+        } finally {
+            transactionBatches.close();
+        }
+    }
+
+    private void write() {
+        try {
+            EventLog batch;
+            while ((batch = eventBatches.take()) != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.copyTo(i, events);
+                }
+                eventBatches.release();
+            }
+        } catch (RuntimeException | Error e) {
+            // Nothing can be written anymore, so there is no point in reading and processing further
+            transactionBatches.abort();
+            eventBatches.abort();
+            throw e;
+        }
+    }
+
+    private Thread start(String name, Runnable stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    // Keeps the first failure, the others are usually caused by it
+    private synchronized void fail(Throwable e) {
+        if (failure == null) failure = e;
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Adds the events of the processor to the batch that is filled at the moment.
+     */
+    private static final class BatchSink implements EventSink {
+        private EventLog log;
+
+        @Override
+        public void accept(Event event) {
+            log.accept(event);
+        }
+
+        @Override
+        public void approved(String transactionId) {
+            log.approved(transactionId);
+        }
+
+        @Override
+        public void declined(String transactionId, DeclineReason reason, Object... args) {
+            log.declined(transactionId, reason, args);
+        }
+    }
+}
@@ -1,241 +1,413 @@
-import dto.BinMapping;
-import dto.Event;
+import dto.DeclineReason;
 import dto.Transaction;
 import dto.User;
+import util.AccountOwnerTable;
+import util.AccountOwners;
+import util.BinIndex;
+import util.EventLog;
+import util.EventSink;
+import util.EventStore;
+import util.Metrics;
 import util.Reader;
+import util.ReferenceData;
+import util.Snapshot;
+import util.TransactionIdSet;
+import util.TransactionIdTable;
+import util.TransactionSource;
+import util.UserIndex;
 import util.Writer;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TeldrassilTransactionProcessor {
-    private final List<Event> events = new ArrayList<>();
-    private final Map<String, String> userAccounts = new HashMap<>();
-    private final List<User> users;
-    private final List<Transaction> transactions;
-    private final List<BinMapping> binMappings;
-    private final StringBuilder stringBuilder = new StringBuilder();
+    static final String ENGINE_SEQUENTIAL = "sequential";
+    static final String ENGINE_TWO_PHASE = "two-phase";
+    static final String ENGINE_PARTITIONED = "partitioned";
+    static final String ENGINE_PIPELINED = "pipelined";
+    private static final String ENGINE = System.getProperty("teldrassil.engine", ENGINE_SEQUENTIAL);
+    private static final int ENGINE_THREADS = Integer.getInteger("teldrassil.engine.threads", Runtime.getRuntime().availableProcessors());
+    private static final int ENGINE_BATCH_SIZE = Integer.getInteger("teldrassil.engine.batchSize", 4096);
+    private static final int ENGINE_PIPELINE_BATCHES = Integer.getInteger("teldrassil.engine.pipelineBatches", 8);
+    private static final String METRICS_FILE = "metrics.json";
+    static final String SNAPSHOT_LOAD = System.getProperty("teldrassil.snapshot.load");
+    static final String SNAPSHOT_SAVE = System.getProperty("teldrassil.snapshot.save");
+    private static final String REFERENCE_DATA = System.getProperty("teldrassil.referenceData");
+    private static final boolean EVENT_STORE = Boolean.getBoolean("teldrassil.eventStore");
+
+    // Rules of the validation chain in the order they are applied
+    static final String[] VALIDATORS = {"userExistsAndNotFrozen", "uniqueId", "correctUserAccount", "transactionType",
+            "amountNotNegative", "userLimits", "enoughForWithdraw", "iban", "withdrawFromExistingAccount",
+            "onlyDebitCardPayment", "country"};
+    private static final int V_USER = 0;
+    private static final int V_UNIQUE_ID = 1;
+    private static final int V_CORRECT_USER_ACCOUNT = 2;
+    private static final int V_TRANSACTION_TYPE = 3;
+    private static final int V_AMOUNT_NOT_NEGATIVE = 4;
+    private static final int V_USER_LIMITS = 5;
+    private static final int V_ENOUGH_FOR_WITHDRAW = 6;
+    private static final int V_IBAN = 7;
+    private static final int V_WITHDRAW_FROM_EXISTING_ACCOUNT = 8;
+    private static final int V_ONLY_DEBIT_CARD_PAYMENT = 9;
+    private static final int V_COUNTRY = 10;
+    // Validator of every rule of the pre-validation, the user lookup is done before its first rule
+    private static final int[] PRE_VALIDATED = {V_USER, V_TRANSACTION_TYPE, V_AMOUNT_NOT_NEGATIVE, V_IBAN,
+            V_ONLY_DEBIT_CARD_PAYMENT, V_COUNTRY};
+
+    private final UserIndex users;
+    private final BinIndex binIndex;
+    private final AccountOwnerTable userAccounts;
+    private final TransactionIdTable processedTransactionIds;
+    // Pre-validators of this processor and of the threads of the engine, for their timings
+    private final List<TransactionPreValidator> preValidators = new CopyOnWriteArrayList<>();
+    private final TransactionPreValidator preValidator;
+    private final ValidationContext context;
+    private final EventSink events;
+    private long transactionCount;
+    private long eventCount;
+    private final long[] validatorInvocations = new long[VALIDATORS.length];
+    private final long[] validatorDeclines = new long[VALIDATORS.length];
+    // Time of the stateful part of every validator, measured on sampled transactions only
+    private final long[] validatorNanos = new long[VALIDATORS.length];
+    private boolean sampled;
+    private long lapStart;
 
     public TeldrassilTransactionProcessor(
             final List<User> users,
-            final List<Transaction> transactions,
-            final List<BinMapping> binMappings) {
+            final BinIndex binIndex,
+            final EventSink events) {
+        this(new UserIndex(users), binIndex, events);
+    }
+
+    TeldrassilTransactionProcessor(
+            final UserIndex users,
+            final BinIndex binIndex,
+            final EventSink events) {
+        this(users, binIndex, events, new AccountOwners(), new TransactionIdSet());
+    }
+
+    /**
+     * Shares account owners and ids of processed transactions with other instances. Callers make sure that
+     * transactions committed at the same time have different users, accounts and ids, and that the shared
+     * collections can be changed concurrently.
+     */
+    TeldrassilTransactionProcessor(
+            final UserIndex users,
+            final BinIndex binIndex,
+            final EventSink events,
+            final AccountOwnerTable userAccounts,
+            final TransactionIdTable processedTransactionIds) {
         this.users = users;
-        this.transactions = transactions;
-        this.binMappings = binMappings;
+        this.binIndex = binIndex;
+        this.userAccounts = userAccounts;
+        this.processedTransactionIds = processedTransactionIds;
+        this.preValidator = new TransactionPreValidator(users, binIndex);
+        preValidators.add(preValidator);
+        this.context = new ValidationContext(binIndex);
+        this.events = events;
     }
 
     public static void main(final String[] args) {
         if (args.length != 5) throw new RuntimeException("Wrong number of file paths provided. Expected: 5. Actual: " + args.length);
 
-        List<User> users = Reader.readUsers(Paths.get(args[0]));
-        List<Transaction> transactions = Reader.readTransactions(Paths.get(args[1]));
-        List<BinMapping> binMappings = Reader.readBinMappings(Paths.get(args[2]));
+        Metrics metrics = new Metrics();
+        UserIndex users = metrics.time("readUsers", () -> new UserIndex(Reader.readUsers(Paths.get(args[0]))));
+        BinIndex binIndex = metrics.time("readBinMappings", () -> readBinIndex(Paths.get(args[2])));
+        Snapshot snapshot = SNAPSHOT_LOAD == null ? null : metrics.time("loadSnapshot", () -> {
+            Snapshot loaded = Snapshot.load(Paths.get(SNAPSHOT_LOAD));
+            loaded.applyBalances(users.getUsers());
+            return loaded;
+        });
+
+        Path transactionsFile = Paths.get(args[1]);
+        long processedFrom = snapshot == null ? 0 : snapshot.resumeOffset(transactionsFile);
+        // A compressed or columnar file can not be continued, its size says nothing about the lines in it
+        long processedTo = Reader.isAppendable(transactionsFile) ? Snapshot.fileSize(transactionsFile) : -1;
+        AccountOwners userAccounts = snapshot == null ? new AccountOwners() : snapshot.getAccountOwners(users);
+        TransactionIdSet processedTransactionIds = snapshot == null ? new TransactionIdSet() : snapshot.getTransactionIds();
+        TeldrassilTransactionProcessor transactionProcessor = processFile(users, binIndex, metrics,
+                transactionsFile, processedFrom, processedTo < 0 ? Long.MAX_VALUE : processedTo, Paths.get(args[4]),
+                userAccounts, processedTransactionIds);
+
+        metrics.time("writeBalances", () -> Writer.writeBalances(Paths.get(args[3]), users.getUsers()));
+        if (SNAPSHOT_SAVE != null) {
+            metrics.time("saveSnapshot", () -> new Snapshot(users, userAccounts, processedTransactionIds,
+                    transactionsFile, processedTo).save(Paths.get(SNAPSHOT_SAVE)));
+        }
+        transactionProcessor.writeMetrics(metrics, Paths.get(args[3]).resolveSibling(METRICS_FILE));
+    }
 
-        TeldrassilTransactionProcessor transactionProcessor = new TeldrassilTransactionProcessor(users, transactions, binMappings);
-        transactionProcessor.processTransactions();
+    /**
+     * Processes the lines of a transactions file that start within [from, to) with the configured engine.
+     * Account owners and ids of processed transactions are taken from and left in the given collections.
+     */
+    static TeldrassilTransactionProcessor processFile(
+            UserIndex users, BinIndex binIndex, Metrics metrics, Path transactionsFile, long from, long to,
+            Path eventsFile, AccountOwners userAccounts, TransactionIdSet processedTransactionIds) {
+        return metrics.time("processTransactions", () -> {
+            try (TransactionSource transactions = metrics.measure(Reader.openTransactions(transactionsFile, from, to));
+                 EventSink events = metrics.measure(openEvents(eventsFile))) {
+                PipelinedProcessor pipeline = ENGINE.equals(ENGINE_PIPELINED)
+                        ? new PipelinedProcessor(ENGINE_BATCH_SIZE, ENGINE_PIPELINE_BATCHES, events) : null;
+                TeldrassilTransactionProcessor transactionProcessor = new TeldrassilTransactionProcessor(users, binIndex,
+                        pipeline == null ? events : pipeline.getEventSink(), userAccounts, processedTransactionIds);
+                switch (ENGINE) {
+                    case ENGINE_SEQUENTIAL -> transactionProcessor.processTransactions(transactions);
+                    case ENGINE_TWO_PHASE -> new TwoPhaseProcessor(ENGINE_THREADS, ENGINE_BATCH_SIZE)
+                            .process(transactions, transactionProcessor);
+                    case ENGINE_PARTITIONED -> new PartitionedProcessor(users, binIndex, ENGINE_THREADS)
+                            .process(transactions, transactionProcessor);
+                    case ENGINE_PIPELINED -> pipeline.process(transactions, transactionProcessor, metrics);
+                    default -> throw new RuntimeException("Unknown processing engine " + ENGINE);
+                }
+                return transactionProcessor;
+            }
+        });
+    }
 
-        Writer.writeBalances(Paths.get(args[3]), users);
-        Writer.writeEvents(Paths.get(args[4]), transactionProcessor.events);
-        System.out.printf("Transaction processing finished! Given transactions: %d, Processed transactions: %d%n", transactions.size(), transactionProcessor.events.size());
+    /**
+     * Opens the events file and, if it is configured, the event store next to it.
+     */
+    private static EventSink openEvents(Path eventsFile) {
+        EventSink events = Writer.openEvents(eventsFile);
+        return EVENT_STORE ? EventStore.writeAlongside(events, EventStore.pathFor(eventsFile)) : events;
     }
 
-    private void processTransactions() {
-        for (Transaction transaction : transactions) {
-            Optional<User> user = getUserIfExistsAndNotFrozen(transaction);
-            if (user.isEmpty()) {
-                addDeclinedEvent(transaction, String.format("User %s not found in Users", transaction.getUserId()));
-                continue;
+    void writeMetrics(Metrics metrics, Path metricsFile) {
+        metrics.setCounts(transactionCount, eventCount);
+        long[] nanos = validatorNanos.clone();
+        long binLookupNanos = 0;
+        for (TransactionPreValidator preValidator : preValidators) {
+            for (int rule = 0; rule < PRE_VALIDATED.length; rule++) {
+                nanos[PRE_VALIDATED[rule]] += preValidator.ruleNanos(rule);
             }
-            if (validate(transaction, user.get()))
-                events.add(createSuccessfulEvent(transaction, user.get()));
+            binLookupNanos += preValidator.binLookupNanos();
         }
+        metrics.setValidatorCounts(VALIDATORS, validatorInvocations, validatorDeclines, nanos);
+        metrics.setBinLookupTime(binLookupNanos);
+        metrics.write(metricsFile);
     }
 
-    private boolean validate(Transaction transaction, User user) {
-        return validateUniqueId(transaction) &&
-                validateCorrectUserAccount(transaction, user) &&
-                validateTransactionType(transaction) &&
-                validateAmountAndUserLimits(transaction, user) &&
-                validateEnoughForWithdraw(transaction, user) &&
-                validateIBAN(transaction) &&
-                validateWithdrawFromExistingAccount(transaction) &&
-                validateOnlyDebitCardPayment(transaction) &&
-                validateCountry(transaction, user)
-                ;
+    /**
+     * Reads the BIN mappings file, or the compiled reference data if it is configured.
+     */
+    static BinIndex readBinIndex(Path binMappingsFile) {
+        if (REFERENCE_DATA == null) return new BinIndex(Reader.readBinMappings(binMappingsFile));
+        ReferenceData referenceData = ReferenceData.open(binMappingsFile, Paths.get(REFERENCE_DATA));
+        ValidationContext.addIso3Codes(referenceData.getIso3Codes());
+        return referenceData.getBinIndex();
+    }
+
+    private void processTransactions(TransactionSource transactions) {
+        Transaction transaction;
+        while ((transaction = transactions.next()) != null) {
+            processTransaction(transaction);
+        }
     }
 
-    private Optional<User> getUserIfExistsAndNotFrozen(Transaction transaction) {
-        return users.stream().filter(u -> u.getUserId().equals(transaction.getUserId())
-                && u.getFrozen().equals(User.USER_NOT_FROZEN)).findFirst();
+    /**
+     * @return pre-validator whose timings are reported with the ones of this processor, not thread-safe
+     */
+    TransactionPreValidator newPreValidator() {
+        TransactionPreValidator preValidator = new TransactionPreValidator(users, binIndex);
+        preValidators.add(preValidator);
+        return preValidator;
     }
 
-    private boolean validateUniqueId(Transaction transaction) {
-        boolean isIdUnique = events.stream().anyMatch(e -> e.transactionId.equals(transaction.getTransactionId()));
-        if (isIdUnique) {
-            addDeclinedEvent(transaction, String.format("Transaction %s already processed (id non-unique)", transaction.getTransactionId()));
-            return false;
+    void processTransaction(Transaction transaction) {
+        commitTransaction(transaction, preValidator.preValidate(transaction));
+    }
+
+    /**
+     * Applies the stateful rules of the validation chain, results of the stateless ones come from the pre-validation.
+     * Must be called in the original order of transactions.
+     */
+    void commitTransaction(Transaction transaction, TransactionPreValidator.Result preValidation) {
+        sampled = transactionCount++ % Metrics.SAMPLE_INTERVAL == 0;
+        if (sampled) lapStart = System.nanoTime();
+        User user = preValidation.user;
+        if (!counted(V_USER, user != null)) {
+            addDeclinedEvent(transaction, DeclineReason.USER_NOT_FOUND, transaction.getUserId());
+            return;
         }
-        return true;
+        if (validate(context.reset(transaction, user, preValidation.userSymbol), preValidation))
+            approve(context);
     }
 
-    private boolean validateIBAN(Transaction transaction) {
-        if (transaction.getMethod().equals(Transaction.PAYMENT_METHOD_TRANSFER)) {
-            if (transaction.getAccountNumber().length() < 15 ||
-                    transaction.getAccountNumber().length() > 34) {
-                addDeclinedEvent(transaction, String.format("Invalid iban %s", transaction.getAccountNumber()));
-                return false;
-            }
+    /**
+     * Declines a transaction that is already known to have a non-unique id.
+     */
+    void commitDuplicate(Transaction transaction) {
+        transactionCount++;
+        sampled = false;
+        counted(V_USER, true);
+        counted(V_UNIQUE_ID, false);
+        declineDuplicate(transaction);
+    }
 
-            stringBuilder.setLength(0);
-            stringBuilder.append(transaction.getAccountNumber());
-            String checkDigits = stringBuilder.substring(0, 4);
-            String BBAN = stringBuilder.substring(4);
-            stringBuilder.setLength(0);
-
-            for (char c : (BBAN + checkDigits).toCharArray()) {
-                if (Character.isLetter(c)) {
-                    stringBuilder.append(Character.getNumericValue(c));
-                } else {
-                    stringBuilder.append(c);
-                }
-            }
-            try {
-                BigInteger checkNumber = new BigInteger(stringBuilder.toString());
-                if (!checkNumber.remainder(BigInteger.valueOf(97)).equals(BigInteger.ONE)) {
-                    addDeclinedEvent(transaction, String.format("Invalid iban %s", transaction.getAccountNumber()));
-                    return false;
-                }
-            } catch (Exception e) {
-                return false;
-            }
+    boolean isProcessed(String transactionId) {
+        return processedTransactionIds.contains(transactionId);
+    }
+
+    /**
+     * Takes over the owner of an account from another processor instance, if it has one.
+     */
+    void copyAccountOwner(TeldrassilTransactionProcessor from, String accountNumber) {
+        int owner = from.userAccounts.get(accountNumber);
+        if (owner != AccountOwners.NO_OWNER) userAccounts.put(accountNumber, owner);
+    }
+
+    /**
+     * Takes over the account owners of another processor instance that processed a part of the transactions.
+     */
+    void addAccountOwners(AccountOwners owners) {
+        userAccounts.putAll(owners);
+    }
+
+    /**
+     * Adds the validator counts of another processor instance that processed a part of the transactions.
+     */
+    void addValidatorCounts(TeldrassilTransactionProcessor other) {
+        for (int i = 0; i < VALIDATORS.length; i++) {
+            validatorInvocations[i] += other.validatorInvocations[i];
+            validatorDeclines[i] += other.validatorDeclines[i];
+            validatorNanos[i] += other.validatorNanos[i];
         }
-        return true;
     }
 
-    private boolean validateAmountAndUserLimits(Transaction transaction, User user) {
-        if (transaction.getAmount().compareTo(BigDecimal.ZERO) < 0) {
-            addDeclinedEvent(transaction, "Amount is negative for transaction");
+    /**
+     * Takes over the outcome of a transaction processed by another processor instance,
+     * index of its event in the log is negative if there was none.
+     */
+    void commitResult(EventLog log, int index) {
+        transactionCount++;
+        if (index < 0) return;
+        recordEvent(log.getTransactionId(index));
+        log.copyTo(index, events);
+    }
+
+    private boolean validate(ValidationContext context, TransactionPreValidator.Result preValidation) {
+        Transaction transaction = context.transaction();
+        return counted(V_UNIQUE_ID, validateUniqueId(transaction)) &&
+                counted(V_CORRECT_USER_ACCOUNT, validateCorrectUserAccount(context)) &&
+                counted(V_TRANSACTION_TYPE, passedPreValidation(transaction, preValidation, TransactionPreValidator.RULE_TRANSACTION_TYPE)) &&
+                counted(V_AMOUNT_NOT_NEGATIVE, passedPreValidation(transaction, preValidation, TransactionPreValidator.RULE_AMOUNT_NOT_NEGATIVE)) &&
+                counted(V_USER_LIMITS, validateUserLimits(context)) &&
+                counted(V_ENOUGH_FOR_WITHDRAW, validateEnoughForWithdraw(context)) &&
+                counted(V_IBAN, passedPreValidation(transaction, preValidation, TransactionPreValidator.RULE_IBAN)) &&
+                counted(V_WITHDRAW_FROM_EXISTING_ACCOUNT, validateWithdrawFromExistingAccount(context)) &&
+                counted(V_ONLY_DEBIT_CARD_PAYMENT, passedPreValidation(transaction, preValidation, TransactionPreValidator.RULE_DEBIT_CARD)) &&
+                counted(V_COUNTRY, passedPreValidation(transaction, preValidation, TransactionPreValidator.RULE_COUNTRY))
+                ;
+    }
+
+    private boolean counted(int validator, boolean passed) {
+        validatorInvocations[validator]++;
+        if (!passed) validatorDeclines[validator]++;
+        if (sampled) {
+            long now = System.nanoTime();
+            validatorNanos[validator] += (now - lapStart) * Metrics.SAMPLE_INTERVAL;
+            lapStart = now;
+        }
+        return passed;
+    }
+
+    private boolean passedPreValidation(Transaction transaction, TransactionPreValidator.Result preValidation, int rule) {
+        if (preValidation.failedRule != rule) return true;
+        if (preValidation.error != null) throw preValidation.error;
+        if (preValidation.reason != null) addDeclinedEvent(transaction, preValidation.reason, preValidation.arguments);
+        return false;
+    }
+
+    private boolean validateUniqueId(Transaction transaction) {
+        if (processedTransactionIds.contains(transaction.getTransactionId())) {
+            declineDuplicate(transaction);
             return false;
         }
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_WITHDRAW)) {
+        return true;
+    }
+
+    private void declineDuplicate(Transaction transaction) {
+        addDeclinedEvent(transaction, DeclineReason.DUPLICATE_TRANSACTION, transaction.getTransactionId());
+    }
+
+    private boolean validateUserLimits(ValidationContext context) {
+        Transaction transaction = context.transaction();
+        User user = context.user();
+        if (context.isWithdraw()) {
             if (user.getWithdrawMax().compareTo(transaction.getAmount()) < 0) {
-                addDeclinedEvent(transaction, String.format("Amount %s is over the withdraw limit of %s", formatAmount(transaction.getAmount()), formatAmount(user.getWithdrawMax())));
+                addDeclinedEvent(transaction, DeclineReason.OVER_WITHDRAW_LIMIT, transaction.getAmount(), user.getWithdrawMax());
                 return false;
             }
             if (user.getWithdrawMin().compareTo(transaction.getAmount()) > 0) {
-                addDeclinedEvent(transaction, String.format("Amount %s is under the withdraw limit of %s", formatAmount(transaction.getAmount()), formatAmount(user.getWithdrawMin())));
+                addDeclinedEvent(transaction, DeclineReason.UNDER_WITHDRAW_LIMIT, transaction.getAmount(), user.getWithdrawMin());
                 return false;
             }
         }
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_DEPOSIT)) {
+        if (context.isDeposit()) {
             if (user.getDepositMax().compareTo(transaction.getAmount()) < 0) {
-                addDeclinedEvent(transaction, String.format("Amount %s is over the deposit limit of %s", formatAmount(transaction.getAmount()), formatAmount(user.getDepositMax())));
+                addDeclinedEvent(transaction, DeclineReason.OVER_DEPOSIT_LIMIT, transaction.getAmount(), user.getDepositMax());
                 return false;
             }
             if (user.getDepositMin().compareTo(transaction.getAmount()) > 0) {
-                addDeclinedEvent(transaction, String.format("Amount %s is under the deposit limit of %s", formatAmount(transaction.getAmount()), formatAmount(user.getDepositMin())));
+                addDeclinedEvent(transaction, DeclineReason.UNDER_DEPOSIT_LIMIT, transaction.getAmount(), user.getDepositMin());
                 return false;
             }
         }
         return true;
     }
 
-    private boolean validateCountry(Transaction transaction, User user) {
-        if (transaction.getMethod().equals(Transaction.PAYMENT_METHOD_CARD)) {
-            BinMapping bin = getBinMapping(transaction);
-            if (bin == null) return false;
-
-            if (!bin.getCountry().equals(getISO3(user.getCountry()))) {
-                addDeclinedEvent(transaction, String.format("Invalid country %s; expected %s (%s)", bin.getCountry(), user.getCountry(), getISO3(user.getCountry())));
-                return false;
-            }
-        }
-        if (transaction.getMethod().equals(Transaction.PAYMENT_METHOD_TRANSFER)) {
-            if (!user.getCountry().equals(transaction.getAccountNumber().substring(0, 2))) {
-                addDeclinedEvent(transaction, String.format("Invalid account country %s; expected %s", transaction.getAccountNumber().substring(0, 2), user.getCountry()));
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean validateEnoughForWithdraw(Transaction transaction, User user) {
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_WITHDRAW)
-                && user.getBalance().compareTo(transaction.getAmount()) < 0) {
-            addDeclinedEvent(transaction, String.format("Not enough balance to withdraw %s - balance is too low at %s", formatAmount(transaction.getAmount()), formatAmount(user.getBalance())));
-            return false;
-        }
-        return true;
-    }
-
-    private boolean validateWithdrawFromExistingAccount(Transaction transaction) {
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_WITHDRAW)
-                && userAccounts.get(transaction.getAccountNumber()) == null) {
-            addDeclinedEvent(transaction, String.format("Cannot withdraw with a new account %s", transaction.getAccountNumber()));
+    private boolean validateEnoughForWithdraw(ValidationContext context) {
+        Transaction transaction = context.transaction();
+        User user = context.user();
+        if (context.isWithdraw() && user.getBalance().compareTo(transaction.getAmount()) < 0) {
+            addDeclinedEvent(transaction, DeclineReason.NOT_ENOUGH_BALANCE, transaction.getAmount(), user.getBalance());
             return false;
         }
         return true;
     }
 
-    private boolean validateTransactionType(Transaction transaction) {
-        if (!transaction.getType().equals(Transaction.TRANSACTION_TYPE_DEPOSIT)
-                && !transaction.getType().equals(Transaction.TRANSACTION_TYPE_WITHDRAW)) {
-            addDeclinedEvent(transaction, "Wrong transaction method");
+    private boolean validateWithdrawFromExistingAccount(ValidationContext context) {
+        Transaction transaction = context.transaction();
+        if (context.isWithdraw() && context.accountOwner(userAccounts) == AccountOwners.NO_OWNER) {
+            addDeclinedEvent(transaction, DeclineReason.WITHDRAW_WITH_NEW_ACCOUNT, transaction.getAccountNumber());
             return false;
         }
         return true;
     }
 
-    private boolean validateCorrectUserAccount(Transaction transaction, User user) {
-        String userId = userAccounts.get(transaction.getAccountNumber());
-        if (userId != null && !user.getUserId().equals(userId)) {
-            addDeclinedEvent(transaction, String.format("Account %s is in use by other user", transaction.getAccountNumber()));
+    private boolean validateCorrectUserAccount(ValidationContext context) {
+        Transaction transaction = context.transaction();
+        int owner = context.accountOwner(userAccounts);
+        if (owner != AccountOwners.NO_OWNER && owner != context.userSymbol()) {
+            addDeclinedEvent(transaction, DeclineReason.ACCOUNT_IN_USE, transaction.getAccountNumber());
             return false;
         }
         return true;
     }
 
-    private boolean validateOnlyDebitCardPayment(Transaction transaction) {
-        if (transaction.getMethod().equals(Transaction.PAYMENT_METHOD_CARD)) {
-            BinMapping bin = getBinMapping(transaction);
-            if (bin == null) return false;
-            if (!bin.getType().equals(BinMapping.DEBIT_CARD)) {
-                addDeclinedEvent(transaction, "Only DC cards allowed; got CC");
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private Event createSuccessfulEvent(Transaction transaction, User user) {
-        userAccounts.put(transaction.getAccountNumber(), user.getUserId());
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_DEPOSIT)) {
+    private void approve(ValidationContext context) {
+        Transaction transaction = context.transaction();
+        User user = context.user();
+        context.setAccountOwner(userAccounts);
+        if (context.isDeposit()) {
             user.setBalance(user.getBalance().add(transaction.getAmount()));
         }
-        if (transaction.getType().equals(Transaction.TRANSACTION_TYPE_WITHDRAW))
+        if (context.isWithdraw())
             user.setBalance(user.getBalance().subtract(transaction.getAmount()));
-        return new Event(transaction.getTransactionId(), Event.STATUS_APPROVED, "OK");
-    }
-
-    private BinMapping getBinMapping(Transaction transaction) {
-        long accountNumber = Long.parseLong(transaction.getAccountNumber().substring(0, 10));
-        Optional<BinMapping> bin = binMappings.stream().filter(e -> e.getRangeFrom() <= accountNumber
-                && accountNumber <= e.getRangeTo()).findFirst();
-        return bin.orElse(null);
-    }
-
-    private String formatAmount(BigDecimal amount) {
-        return String.format("%.2f", amount).replace(",", ".");
+        recordEvent(transaction.getTransactionId());
+        events.approved(transaction.getTransactionId());
     }
 
-    private void addDeclinedEvent(Transaction transaction, String message) {
-        events.add(new Event(transaction.getTransactionId(), Event.STATUS_DECLINED, message));
+    private void addDeclinedEvent(Transaction transaction, DeclineReason reason, Object... args) {
+        recordEvent(transaction.getTransactionId());
+        events.declined(transaction.getTransactionId(), reason, args);
     }
 
-    private String getISO3(String iso2Country) {
-        return Locale.of("", iso2Country).getISO3Country();
+    private void recordEvent(String transactionId) {
+        processedTransactionIds.add(transactionId);
+        eventCount++;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+import dto.BinMapping;
+import dto.DeclineReason;
+import dto.Transaction;
+import dto.User;
+import util.BinIndex;
+import util.IbanValidator;
+import util.Metrics;
+import util.UserIndex;
+
+/**
+ * Runs the checks that depend only on the transaction itself and the reference data (users, BIN table).
+ * Results can be computed ahead of time, also on other threads, and are applied later by
+ * {@link TeldrassilTransactionProcessor} at the same place of the validation chain as before.
+ * Not thread-safe, every thread needs its own instance.
+ */
+class TransactionPreValidator {
+    static final int RULE_NONE = 0;
+    static final int RULE_TRANSACTION_TYPE = 1;
+    static final int RULE_AMOUNT_NOT_NEGATIVE = 2;
+    static final int RULE_IBAN = 3;
+    static final int RULE_DEBIT_CARD = 4;
+    static final int RULE_COUNTRY = 5;
+
+    static final class Result {
+        final User user;
+        // Symbol of the user id in the user index, -1 if there is no user
+        final int userSymbol;
+        final int failedRule;
+        // Null when the transaction is declined without an event
+        final DeclineReason reason;
+        final Object[] arguments;
+        final RuntimeException error;
+
+        private Result(User user, int userSymbol, int failedRule, DeclineReason reason, Object[] arguments,
+                       RuntimeException error) {
+            this.user = user;
+            this.userSymbol = userSymbol;
+            this.failedRule = failedRule;
+            this.reason = reason;
+            this.arguments = arguments;
+            this.error = error;
+        }
+    }
+
+    private final UserIndex users;
+    private final IbanValidator ibanValidator = new IbanValidator();
+    private final ValidationContext context;
+    // Time spent in every rule, the user lookup in RULE_NONE, measured on every SAMPLE_INTERVALth transaction
+    private final long[] ruleNanos = new long[RULE_COUNTRY + 1];
+    private long calls;
+    private boolean sampled;
+    private long lapStart;
+
+    TransactionPreValidator(final UserIndex users, final BinIndex binIndex) {
+        this.users = users;
+        this.context = new ValidationContext(binIndex);
+    }
+
+    Result preValidate(Transaction transaction) {
+        sampled = calls++ % Metrics.SAMPLE_INTERVAL == 0;
+        if (sampled) lapStart = System.nanoTime();
+        int userSymbol = users.symbolOf(transaction.getUserId());
+        User user = users.activeUser(userSymbol);
+        lap(RULE_NONE);
+        if (user == null) return new Result(null, -1, RULE_NONE, null, null, null);
+
+        ValidationContext context = this.context.reset(transaction, user, userSymbol);
+        int rule = RULE_TRANSACTION_TYPE;
+        try {
+            Result result;
+            if ((result = lap(rule, validateTransactionType(context))) != null) return result;
+            rule = RULE_AMOUNT_NOT_NEGATIVE;
+            if ((result = lap(rule, validateAmountNotNegative(context))) != null) return result;
+            rule = RULE_IBAN;
+            if ((result = lap(rule, validateIBAN(context))) != null) return result;
+            rule = RULE_DEBIT_CARD;
+            if ((result = lap(rule, validateOnlyDebitCardPayment(context))) != null) return result;
+            rule = RULE_COUNTRY;
+            if ((result = lap(rule, validateCountry(context))) != null) return result;
+        } catch (RuntimeException e) {
+            // Rethrown by the processor only if it actually gets to this rule
+            return new Result(user, userSymbol, rule, null, null, e);
+        }
+        return new Result(user, userSymbol, RULE_NONE, null, null, null);
+    }
+
+    /**
+     * @return estimated time spent in the rule, or in the user lookup for {@link #RULE_NONE}
+     */
+    long ruleNanos(int rule) {
+        return ruleNanos[rule] * Metrics.SAMPLE_INTERVAL;
+    }
+
+    long binLookupNanos() {
+        return context.binLookupNanos();
+    }
+
+    private void lap(int rule) {
+        if (sampled) {
+            long now = System.nanoTime();
+            ruleNanos[rule] += now - lapStart;
+            lapStart = now;
+        }
+    }
+
+    private Result lap(int rule, Result result) {
+        lap(rule);
+        return result;
+    }
+
+    private Result validateTransactionType(ValidationContext context) {
+        if (!context.isDeposit() && !context.isWithdraw()) {
+            return declined(context, RULE_TRANSACTION_TYPE, DeclineReason.WRONG_TRANSACTION_TYPE);
+        }
+        return null;
+    }
+
+    private Result validateAmountNotNegative(ValidationContext context) {
+        if (context.transaction().getAmount().signum() < 0) {
+            return declined(context, RULE_AMOUNT_NOT_NEGATIVE, DeclineReason.NEGATIVE_AMOUNT);
+        }
+        return null;
+    }
+
+    private Result validateIBAN(ValidationContext context) {
+        if (context.isTransfer()) {
+            switch (ibanValidator.validate(context.transaction().getAccountNumber())) {
+                case INVALID:
+                    return declined(context, RULE_IBAN, DeclineReason.INVALID_IBAN, context.transaction().getAccountNumber());
+                case MALFORMED:
+                    return silentlyDeclined(context, RULE_IBAN);
+            }
+        }
+        return null;
+    }
+
+    private Result validateOnlyDebitCardPayment(ValidationContext context) {
+        if (context.isCard()) {
+            BinMapping bin = context.bin();
+            if (bin == null) return silentlyDeclined(context, RULE_DEBIT_CARD);
+            if (!bin.getType().equals(BinMapping.DEBIT_CARD)) {
+                return declined(context, RULE_DEBIT_CARD, DeclineReason.CREDIT_CARD);
+            }
+        }
+        return null;
+    }
+
+    private Result validateCountry(ValidationContext context) {
+        User user = context.user();
+        if (context.isCard()) {
+            BinMapping bin = context.bin();
+            if (bin == null) return silentlyDeclined(context, RULE_COUNTRY);
+
+            String iso3 = context.userIso3();
+            if (!bin.getCountry().equals(iso3)) {
+                return declined(context, RULE_COUNTRY, DeclineReason.INVALID_CARD_COUNTRY, bin.getCountry(), user.getCountry(), iso3);
+            }
+        }
+        if (context.isTransfer()) {
+            if (!user.getCountry().equals(context.accountCountry())) {
+                return declined(context, RULE_COUNTRY, DeclineReason.INVALID_ACCOUNT_COUNTRY, context.accountCountry(), user.getCountry());
+            }
+        }
+        return null;
+    }
+
+    private Result declined(ValidationContext context, int rule, DeclineReason reason, Object... args) {
+        return new Result(context.user(), context.userSymbol(), rule, reason, args, null);
+    }
+
+    private Result silentlyDeclined(ValidationContext context, int rule) {
+        return new Result(context.user(), context.userSymbol(), rule, null, null, null);
+    }
+}
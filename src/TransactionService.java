@@ -0,0 +1,309 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dto.Transaction;
+import dto.User;
+import util.AccountOwnerTable;
+import util.AccountOwners;
+import util.BinIndex;
+import util.ChannelWriter;
+import util.EventLog;
+import util.Reader;
+import util.Snapshot;
+import util.TransactionIdSet;
+import util.TransactionIdTable;
+import util.TransactionSource;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps users, BIN table, account owners and processed transaction ids in memory and processes batches of
+ * transactions sent over HTTP, every request on its own virtual thread:
+ * <ul>
+ *     <li>{@code POST /transactions} with the content of a transactions file answers with the events of the batch
+ *     in the format of the events file, an empty line and the current balances of the users of the batch</li>
+ *     <li>{@code GET /balances} answers with all balances in the format of the balances file</li>
+ * </ul>
+ * Batches are pre-validated concurrently. A transaction is committed while holding the lock stripes of its user,
+ * account and id, so batches of independent users proceed concurrently while the transactions of one user keep their
+ * order; balances are read under the stripe of their user as well. A batch that fails part way, e.g. on a user with an
+ * unknown country, keeps the transactions committed so far: the answer has status 500 and the usual content for those,
+ * followed by an empty line and the error.
+ * <p>
+ * Usage: {@code TransactionService <users file> <BIN mappings file> <port>}, snapshots are loaded on start and saved
+ * on shutdown like in {@link TeldrassilTransactionProcessor}.
+ */
+final class TransactionService {
+    private static final int LOCK_STRIPES = Integer.getInteger("teldrassil.service.lockStripes", 256);
+    private static final int SHUTDOWN_DELAY_SECONDS = 5;
+    private static final String CONTENT_TYPE = "text/csv; charset=" + Charset.defaultCharset().name();
+
+    private final UserIndex users;
+    private final BinIndex binIndex;
+    private final AccountOwners userAccounts;
+    private final TransactionIdSet processedTransactionIds;
+    private final AccountOwnerTable sharedUserAccounts;
+    private final TransactionIdTable sharedTransactionIds;
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    TransactionService(final List<User> users, final BinIndex binIndex, final Snapshot snapshot) {
+        this.users = new UserIndex(users);
+        this.binIndex = binIndex;
+        if (snapshot != null) snapshot.applyBalances(users);
+        this.userAccounts = snapshot != null ? snapshot.getAccountOwners(this.users) : new AccountOwners();
+        this.processedTransactionIds = snapshot != null ? snapshot.getTransactionIds() : new TransactionIdSet();
+        this.sharedUserAccounts = new SynchronizedAccountOwners(userAccounts);
+        this.sharedTransactionIds = new SynchronizedTransactionIds(processedTransactionIds);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public static void main(final String[] args) {
+        if (args.length != 3) throw new RuntimeException("Wrong number of arguments provided. Expected: 3. Actual: " + args.length);
+
+        List<User> users = Reader.readUsers(Paths.get(args[0]));
+        BinIndex binIndex = TeldrassilTransactionProcessor.readBinIndex(Paths.get(args[1]));
+        Snapshot snapshot = TeldrassilTransactionProcessor.SNAPSHOT_LOAD == null ? null
+                : Snapshot.load(Paths.get(TeldrassilTransactionProcessor.SNAPSHOT_LOAD));
+        TransactionService service = new TransactionService(users, binIndex, snapshot);
+
+        HttpServer server = service.start(Integer.parseInt(args[2]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(SHUTDOWN_DELAY_SECONDS);
+            if (TeldrassilTransactionProcessor.SNAPSHOT_SAVE != null) service.saveSnapshot();
+        }));
+        System.out.printf("Listening on port %d%n", server.getAddress().getPort());
+    }
+
+    /**
+     * @param port port to listen on, 0 for any free port
+     */
+    HttpServer start(int port) {
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not listen on port %s", port), e);
+        }
+        server.createContext("/transactions", this::handleTransactions);
+        server.createContext("/balances", this::handleBalances);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Processes a batch and adds its events to the log. If a transaction fails, the ones before it stay committed
+     * and their events and users are kept.
+     *
+     * @param batchUsers gets the users that the transactions of the batch were validated for, in the order they
+     *                   first appear in it
+     */
+    void process(TransactionSource transactions, EventLog events, Map<String, User> batchUsers) {
+        List<Transaction> batch = new ArrayList<>();
+        Transaction transaction;
+        while ((transaction = transactions.next()) != null) {
+            batch.add(transaction);
+        }
+        TransactionPreValidator preValidator = new TransactionPreValidator(users, binIndex);
+        TransactionPreValidator.Result[] results = new TransactionPreValidator.Result[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            results[i] = preValidator.preValidate(batch.get(i));
+        }
+
+        TeldrassilTransactionProcessor processor =
+                new TeldrassilTransactionProcessor(users, binIndex, events, sharedUserAccounts, sharedTransactionIds);
+        for (int i = 0; i < batch.size(); i++) {
+            int[] locks = stripesOf(batch.get(i));
+            for (int stripe : locks) {
+                stripes[stripe].lock();
+            }
+            try {
+                processor.commitTransaction(batch.get(i), results[i]);
+            } finally {
+                for (int stripe : locks) {
+                    stripes[stripe].unlock();
+                }
+            }
+            if (results[i].user != null) batchUsers.putIfAbsent(results[i].user.getUserId(), results[i].user);
+        }
+    }
+
+    /**
+     * @return copies of the users with only their id and their current balance
+     */
+    List<User> balancesOf(Collection<User> users) {
+        List<User> balances = new ArrayList<>(users.size());
+        for (User user : users) {
+            User balance = new User();
+            balance.setUserId(user.getUserId());
+            ReentrantLock lock = stripes[stripeOf(user.getUserId())];
+            lock.lock();
+            try {
+                balance.setBalance(user.getBalance());
+            } finally {
+                lock.unlock();
+            }
+            balances.add(balance);
+        }
+        return balances;
+    }
+
+    // Distinct stripes in ascending order, so transactions sharing some of them can not deadlock
+    private int[] stripesOf(Transaction transaction) {
+        int[] locks = {
+                stripeOf(transaction.getUserId()),
+                stripeOf(transaction.getAccountNumber()),
+                stripeOf(transaction.getTransactionId())};
+        Arrays.sort(locks);
+        if (locks[0] == locks[2]) return new int[]{locks[0]};
+        if (locks[0] == locks[1]) return new int[]{locks[0], locks[2]};
+        if (locks[1] == locks[2]) return new int[]{locks[0], locks[1]};
+        return locks;
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ hash >>> 16, stripes.length);
+    }
+
+    private void handleTransactions(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            sendError(exchange, 405, "Use POST with the content of a transactions file");
+            return;
+        }
+        try (InputStream body = exchange.getRequestBody();
+             TransactionSource transactions = Reader.openTransactions(body, "request " + exchange.getRequestURI())) {
+            EventLog events = new EventLog();
+            Map<String, User> batchUsers = new LinkedHashMap<>();
+            RuntimeException error = null;
+            try {
+                process(transactions, events, batchUsers);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(error == null ? 200 : 500, 0);
+            try (ChannelWriter writer = responseWriter(exchange)) {
+                Writer.writeEvents(writer, events);
+                writer.write((byte) '\n');
+                Writer.writeBalances(writer, balancesOf(batchUsers.values()));
+                if (error != null) {
+                    writer.write((byte) '\n').write(String.valueOf(error.getMessage())).write((byte) '\n');
+                }
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBalances(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendError(exchange, 405, "Use GET");
+            return;
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+            try (ChannelWriter writer = responseWriter(exchange)) {
+                Writer.writeBalances(writer, balancesOf(users.getUsers()));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static ChannelWriter responseWriter(HttpExchange exchange) {
+        return new ChannelWriter(Channels.newChannel(exchange.getResponseBody()), "response to " + exchange.getRequestURI());
+    }
+
+    // Headers are already sent when writing the response fails, then the client only sees the connection closing
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) return;
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    // With every stripe held no transaction is committed, so the tables and balances can be read directly
+    private void saveSnapshot() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            new Snapshot(users, userAccounts, processedTransactionIds, null, -1)
+                    .save(Paths.get(TeldrassilTransactionProcessor.SNAPSHOT_SAVE));
+        } finally {
+            for (ReentrantLock stripe : stripes) {
+                stripe.unlock();
+            }
+        }
+    }
+
+    /**
+     * Account owners are changed concurrently for different stripes, the table itself is not thread-safe.
+     */
+    private static final class SynchronizedAccountOwners implements AccountOwnerTable {
+        private final AccountOwners owners;
+
+        private SynchronizedAccountOwners(AccountOwners owners) {
+            this.owners = owners;
+        }
+
+        @Override
+        public synchronized int get(String account) {
+            return owners.get(account);
+        }
+
+        @Override
+        public synchronized void put(String account, int owner) {
+            owners.put(account, owner);
+        }
+
+        @Override
+        public synchronized void putAll(AccountOwners other) {
+            owners.putAll(other);
+        }
+    }
+
+    /**
+     * Ids are added concurrently for different stripes, the set itself is not thread-safe.
+     */
+    private static final class SynchronizedTransactionIds implements TransactionIdTable {
+        private final TransactionIdSet ids;
+
+        private SynchronizedTransactionIds(TransactionIdSet ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public synchronized boolean add(String id) {
+            return ids.add(id);
+        }
+
+        @Override
+        public synchronized boolean contains(String id) {
+            return ids.contains(id);
+        }
+    }
+}
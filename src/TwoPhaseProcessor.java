@@ -0,0 +1,63 @@
+import dto.Transaction;
+import util.TransactionSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Pre-validates batches of transactions on a thread pool and commits them one by one in the original order.
+ * The next batch is pre-validated while the current one is being committed.
+ */
+class TwoPhaseProcessor {
+    private final int threads;
+    private final int batchSize;
+
+    TwoPhaseProcessor(int threads, int batchSize) {
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    void process(TransactionSource transactions, TeldrassilTransactionProcessor processor) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ThreadLocal<TransactionPreValidator> preValidators = ThreadLocal.withInitial(processor::newPreValidator);
+        try {
+            List<Transaction> batch = readBatch(transactions);
+            ForkJoinTask<TransactionPreValidator.Result[]> preValidation = submit(pool, preValidators, batch);
+            while (!batch.isEmpty()) {
+                List<Transaction> nextBatch = readBatch(transactions);
+                ForkJoinTask<TransactionPreValidator.Result[]> nextPreValidation = submit(pool, preValidators, nextBatch);
+
+                TransactionPreValidator.Result[] results = preValidation.join();
+                for (int i = 0; i < batch.size(); i++) {
+                    processor.commitTransaction(batch.get(i), results[i]);
+                }
+                batch = nextBatch;
+                preValidation = nextPreValidation;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Transaction> readBatch(TransactionSource transactions) {
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        Transaction transaction;
+        while (batch.size() < batchSize && (transaction = transactions.next()) != null) {
+            batch.add(transaction);
+        }
+        return batch;
+    }
+
+    private ForkJoinTask<TransactionPreValidator.Result[]> submit(
+            ForkJoinPool pool, ThreadLocal<TransactionPreValidator> preValidators, List<Transaction> batch) {
+        return pool.submit(() -> {
+            TransactionPreValidator.Result[] results = new TransactionPreValidator.Result[batch.size()];
+            IntStream.range(0, batch.size()).parallel()
+                    .forEach(i -> results[i] = preValidators.get().preValidate(batch.get(i)));
+            return results;
+        });
+    }
+}
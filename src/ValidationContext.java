@@ -0,0 +1,164 @@
+import dto.BinMapping;
+import dto.Transaction;
+import dto.User;
+import util.AccountOwnerTable;
+import util.AccountOwners;
+import util.BinIndex;
+import util.Metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values derived from the transaction being validated that several rules of the validation chain need.
+ * One instance is reused for all transactions; derived values are computed on first use, so a rule that throws
+ * on bad input still throws at the same place of the chain as before. Not thread-safe.
+ */
+final class ValidationContext {
+    static final byte TYPE_OTHER = 0;
+    static final byte TYPE_DEPOSIT = 1;
+    static final byte TYPE_WITHDRAW = 2;
+    static final byte METHOD_OTHER = 0;
+    static final byte METHOD_CARD = 1;
+    static final byte METHOD_TRANSFER = 2;
+
+    // Only countries that have an ISO3 code are cached, others throw every time like Locale does
+    private static final Map<String, String> ISO3_CODES = new ConcurrentHashMap<>();
+
+    private final BinIndex binIndex;
+    private Transaction transaction;
+    private User user;
+    private int userSymbol;
+    private byte type;
+    private byte method;
+    private boolean binResolved;
+    private BinMapping bin;
+    private String accountCountry;
+    private boolean accountOwnerResolved;
+    private int accountOwner;
+    private long binLookups;
+    private long binLookupNanos;
+
+    ValidationContext(final BinIndex binIndex) {
+        this.binIndex = binIndex;
+    }
+
+    ValidationContext reset(Transaction transaction, User user, int userSymbol) {
+        this.transaction = transaction;
+        this.user = user;
+        this.userSymbol = userSymbol;
+        this.type = switch (transaction.getType()) {
+            case Transaction.TRANSACTION_TYPE_DEPOSIT -> TYPE_DEPOSIT;
+            case Transaction.TRANSACTION_TYPE_WITHDRAW -> TYPE_WITHDRAW;
+            default -> TYPE_OTHER;
+        };
+        this.method = switch (transaction.getMethod()) {
+            case Transaction.PAYMENT_METHOD_CARD -> METHOD_CARD;
+            case Transaction.PAYMENT_METHOD_TRANSFER -> METHOD_TRANSFER;
+            default -> METHOD_OTHER;
+        };
+        binResolved = false;
+        bin = null;
+        accountCountry = null;
+        accountOwnerResolved = false;
+        return this;
+    }
+
+    /**
+     * Adds ISO3 codes known in advance, e.g. from compiled {@link util.ReferenceData}.
+     */
+    static void addIso3Codes(Map<String, String> iso3Codes) {
+        ISO3_CODES.putAll(iso3Codes);
+    }
+
+    Transaction transaction() {
+        return transaction;
+    }
+
+    User user() {
+        return user;
+    }
+
+    int userSymbol() {
+        return userSymbol;
+    }
+
+    boolean isDeposit() {
+        return type == TYPE_DEPOSIT;
+    }
+
+    boolean isWithdraw() {
+        return type == TYPE_WITHDRAW;
+    }
+
+    boolean isCard() {
+        return method == METHOD_CARD;
+    }
+
+    boolean isTransfer() {
+        return method == METHOD_TRANSFER;
+    }
+
+    /**
+     * @return BIN range of the card, null if the card number is in none of them
+     */
+    BinMapping bin() {
+        if (!binResolved) {
+            if (binLookups++ % Metrics.SAMPLE_INTERVAL == 0) {
+                long start = System.nanoTime();
+                bin = binIndex.find(Long.parseLong(transaction.getAccountNumber(), 0, 10, 10));
+                binLookupNanos += (System.nanoTime() - start) * Metrics.SAMPLE_INTERVAL;
+            } else {
+                bin = binIndex.find(Long.parseLong(transaction.getAccountNumber(), 0, 10, 10));
+            }
+            binResolved = true;
+        }
+        return bin;
+    }
+
+    /**
+     * @return estimated time spent in BIN lookups, measured on every {@link Metrics#SAMPLE_INTERVAL}th lookup
+     */
+    long binLookupNanos() {
+        return binLookupNanos;
+    }
+
+    String userIso3() {
+        String country = user.getCountry();
+        String iso3 = ISO3_CODES.get(country);
+        if (iso3 == null) {
+            iso3 = Locale.of("", country).getISO3Country();
+            ISO3_CODES.put(country, iso3);
+        }
+        return iso3;
+    }
+
+    /**
+     * @return country code at the start of the IBAN
+     */
+    String accountCountry() {
+        if (accountCountry == null) accountCountry = transaction.getAccountNumber().substring(0, 2);
+        return accountCountry;
+    }
+
+    /**
+     * @return symbol of the user the account belongs to, {@link AccountOwners#NO_OWNER} if it has none
+     */
+    int accountOwner(AccountOwnerTable userAccounts) {
+        if (!accountOwnerResolved) {
+            accountOwner = userAccounts.get(transaction.getAccountNumber());
+            accountOwnerResolved = true;
+        }
+        return accountOwner;
+    }
+
+    /**
+     * Records that the account now belongs to the user of the transaction.
+     */
+    void setAccountOwner(AccountOwnerTable userAccounts) {
+        userAccounts.put(transaction.getAccountNumber(), userSymbol);
+        accountOwner = userSymbol;
+        accountOwnerResolved = true;
+    }
+}
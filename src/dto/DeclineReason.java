@@ -0,0 +1,75 @@
+package dto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decline messages of the processor. Templates are split at their {@code %s} placeholders once,
+ * so messages can be put together without {@link String#format}.
+ */
+public enum DeclineReason {
+    USER_NOT_FOUND("User %s not found in Users"),
+    DUPLICATE_TRANSACTION("Transaction %s already processed (id non-unique)"),
+    ACCOUNT_IN_USE("Account %s is in use by other user"),
+    WRONG_TRANSACTION_TYPE("Wrong transaction method"),
+    NEGATIVE_AMOUNT("Amount is negative for transaction"),
+    OVER_WITHDRAW_LIMIT("Amount %s is over the withdraw limit of %s", true),
+    UNDER_WITHDRAW_LIMIT("Amount %s is under the withdraw limit of %s", true),
+    OVER_DEPOSIT_LIMIT("Amount %s is over the deposit limit of %s", true),
+    UNDER_DEPOSIT_LIMIT("Amount %s is under the deposit limit of %s", true),
+    NOT_ENOUGH_BALANCE("Not enough balance to withdraw %s - balance is too low at %s", true),
+    INVALID_IBAN("Invalid iban %s"),
+    WITHDRAW_WITH_NEW_ACCOUNT("Cannot withdraw with a new account %s"),
+    CREDIT_CARD("Only DC cards allowed; got CC"),
+    INVALID_CARD_COUNTRY("Invalid country %s; expected %s (%s)"),
+    INVALID_ACCOUNT_COUNTRY("Invalid account country %s; expected %s");
+
+    private final String[] parts;
+    private final byte[][] encodedParts;
+    private final boolean amountArguments;
+
+    DeclineReason(String template) {
+        this(template, false);
+    }
+
+    DeclineReason(String template, boolean amountArguments) {
+        this.amountArguments = amountArguments;
+        this.parts = template.split("%s", -1);
+        this.encodedParts = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            encodedParts[i] = parts[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public int getArgumentCount() {
+        return parts.length - 1;
+    }
+
+    /**
+     * @return true if all arguments are {@link Money} amounts, otherwise they are strings
+     */
+    public boolean hasAmountArguments() {
+        return amountArguments;
+    }
+
+    /**
+     * @return literal text before argument {@code index}, or after the last argument for {@code index == getArgumentCount()}
+     */
+    public byte[] getEncodedPart(int index) {
+        return encodedParts[index];
+    }
+
+    public String format(Object... args) {
+        if (parts.length == 1) return parts[0];
+
+        StringBuilder message = new StringBuilder(64);
+        for (int i = 0; i < args.length; i++) {
+            message.append(parts[i]);
+            if (args[i] instanceof Money amount) {
+                amount.appendTo(message);
+            } else {
+                message.append(args[i]);
+            }
+        }
+        return message.append(parts[args.length]).toString();
+    }
+}
@@ -3,14 +3,22 @@ package dto;
 public class Event {
     public static final String STATUS_DECLINED = "DECLINED";
     public static final String STATUS_APPROVED = "APPROVED";
+    public static final String MESSAGE_OK = "OK";
 
     public String transactionId;
     public String status;
     public String message;
+    // Null for approved events and events created from plain text
+    public DeclineReason reason;
 
     public Event(String transactionId, String status, String message) {
         this.transactionId = transactionId;
         this.status = status;
         this.message = message;
     }
+
+    public Event(String transactionId, DeclineReason reason, String message) {
+        this(transactionId, STATUS_DECLINED, message);
+        this.reason = reason;
+    }
 }
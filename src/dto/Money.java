@@ -0,0 +1,179 @@
+package dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Money amount kept as a long number of cents.
+ * Values that can not be represented that way (more than two decimals or out of long range)
+ * are kept as a {@link BigDecimal} instead, so arithmetic and comparison stay exact.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0, null);
+    private static final int MAX_FAST_DIGITS = 18;
+
+    private final long cents;
+    private final BigDecimal big;
+
+    private Money(long cents, BigDecimal big) {
+        this.cents = cents;
+        this.big = big;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == Long.MIN_VALUE ? new Money(0, BigDecimal.valueOf(cents, 2)) : new Money(cents, null);
+    }
+
+    public static Money of(BigDecimal value) {
+        try {
+            return ofCents(value.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            return new Money(0, value);
+        }
+    }
+
+    /**
+     * Accepts the same input as {@link BigDecimal#BigDecimal(String)}.
+     *
+     * @throws NumberFormatException if the value is not a valid number
+     */
+    public static Money parse(CharSequence value) {
+        long cents = parseCents(value, 0, value.length());
+        if (cents != Long.MIN_VALUE) return new Money(cents, null);
+        return of(new BigDecimal(value.toString()));
+    }
+
+    /**
+     * Parses plain amounts such as {@code -123.45} without allocating.
+     *
+     * @return amount in cents, or {@link Long#MIN_VALUE} if the value needs the slow path
+     */
+    public static long parseCents(CharSequence value, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        long result = 0;
+        int digits = 0;
+        while (i < to && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            result = result * 10 + (value.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0) return Long.MIN_VALUE;
+        int decimals = 0;
+        if (i < to && value.charAt(i) == '.') {
+            i++;
+            while (i < to && decimals < 2 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                result = result * 10 + (value.charAt(i++) - '0');
+                decimals++;
+                digits++;
+            }
+        }
+        if (i != to || digits + 2 - decimals > MAX_FAST_DIGITS) return Long.MIN_VALUE;
+        for (; decimals < 2; decimals++) {
+            result *= 10;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Same as {@link #parseCents(CharSequence, int, int)} for ASCII bytes.
+     */
+    public static long parseCents(byte[] value, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (value[i] == '-' || value[i] == '+')) {
+            negative = value[i] == '-';
+            i++;
+        }
+        long result = 0;
+        int digits = 0;
+        while (i < to && value[i] >= '0' && value[i] <= '9') {
+            result = result * 10 + (value[i++] - '0');
+            digits++;
+        }
+        if (digits == 0) return Long.MIN_VALUE;
+        int decimals = 0;
+        if (i < to && value[i] == '.') {
+            i++;
+            while (i < to && decimals < 2 && value[i] >= '0' && value[i] <= '9') {
+                result = result * 10 + (value[i++] - '0');
+                decimals++;
+                digits++;
+            }
+        }
+        if (i != to || digits + 2 - decimals > MAX_FAST_DIGITS) return Long.MIN_VALUE;
+        for (; decimals < 2; decimals++) {
+            result *= 10;
+        }
+        return negative ? -result : result;
+    }
+
+    public boolean isCents() {
+        return big == null;
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return big != null ? big : BigDecimal.valueOf(cents, 2);
+    }
+
+    public int signum() {
+        return big != null ? big.signum() : Long.signum(cents);
+    }
+
+    public Money add(Money other) {
+        if (big == null && other.big == null) {
+            long sum = cents + other.cents;
+            if (((cents ^ sum) & (other.cents ^ sum)) >= 0) return ofCents(sum);
+        }
+        return of(toBigDecimal().add(other.toBigDecimal()));
+    }
+
+    public Money subtract(Money other) {
+        if (big == null && other.big == null) {
+            long difference = cents - other.cents;
+            if (((cents ^ other.cents) & (cents ^ difference)) >= 0) return ofCents(difference);
+        }
+        return of(toBigDecimal().subtract(other.toBigDecimal()));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (big == null && other.big == null) return Long.compare(cents, other.cents);
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    /**
+     * Appends the amount with exactly two decimals, the same way as {@code String.format("%.2f")}.
+     */
+    public StringBuilder appendTo(StringBuilder builder) {
+        if (big != null) return builder.append(String.format("%.2f", big).replace(",", "."));
+
+        long abs = Math.abs(cents);
+        if (cents < 0) builder.append('-');
+        builder.append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) builder.append('0');
+        return builder.append(fraction);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money && compareTo((Money) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return big != null ? big.stripTrailingZeros().hashCode() : Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+}
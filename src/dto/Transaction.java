@@ -1,7 +1,5 @@
 package dto;
 
-import java.math.BigDecimal;
-
 public class Transaction {
     public static final String TRANSACTION_TYPE_DEPOSIT = "DEPOSIT";
     public static final String TRANSACTION_TYPE_WITHDRAW = "WITHDRAW";
@@ -11,17 +9,17 @@ public class Transaction {
     private String transactionId;
     private String userId ;
     private String type;
-    private BigDecimal amount;
+    private Money amount;
     private String accountNumber;
     private String method;
 
     public String getTransactionId() {
         return transactionId;
     }
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
     public void setTransactionId(String transactionId) {
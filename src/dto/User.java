@@ -1,55 +1,53 @@
 package dto;
 
-import java.math.BigDecimal;
-
 public class User {
     public static final String USER_NOT_FROZEN = "0";
     private String userId;
     private String username;
-    private BigDecimal balance;
+    private Money balance;
     private String country;
     private String frozen;
-    private BigDecimal depositMin;
-    private BigDecimal depositMax;
-    private BigDecimal withdrawMin;
-    private BigDecimal withdrawMax;
-    public BigDecimal getBalance() {
+    private Money depositMin;
+    private Money depositMax;
+    private Money withdrawMin;
+    private Money withdrawMax;
+    public Money getBalance() {
         return balance;
     }
 
-    public void setBalance(BigDecimal balance) {
+    public void setBalance(Money balance) {
         this.balance = balance;
     }
 
-    public BigDecimal getDepositMin() {
+    public Money getDepositMin() {
         return depositMin;
     }
 
-    public void setDepositMin(BigDecimal depositMin) {
+    public void setDepositMin(Money depositMin) {
         this.depositMin = depositMin;
     }
 
-    public BigDecimal getDepositMax() {
+    public Money getDepositMax() {
         return depositMax;
     }
 
-    public void setDepositMax(BigDecimal depositMax) {
+    public void setDepositMax(Money depositMax) {
         this.depositMax = depositMax;
     }
 
-    public BigDecimal getWithdrawMin() {
+    public Money getWithdrawMin() {
         return withdrawMin;
     }
 
-    public void setWithdrawMin(BigDecimal withdrawMin) {
+    public void setWithdrawMin(Money withdrawMin) {
         this.withdrawMin = withdrawMin;
     }
 
-    public BigDecimal getWithdrawMax() {
+    public Money getWithdrawMax() {
         return withdrawMax;
     }
 
-    public void setWithdrawMax(BigDecimal withdrawMax) {
+    public void setWithdrawMax(Money withdrawMax) {
         this.withdrawMax = withdrawMax;
     }
 
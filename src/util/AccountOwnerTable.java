@@ -0,0 +1,15 @@
+package util;
+
+/**
+ * Owners of accounts as user symbols of a {@link UserIndex}, as the validation chain reads and changes them.
+ */
+public interface AccountOwnerTable {
+    /**
+     * @return symbol of the owner, {@link AccountOwners#NO_OWNER} if the account has none
+     */
+    int get(String account);
+
+    void put(String account, int owner);
+
+    void putAll(AccountOwners other);
+}
@@ -0,0 +1,172 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Owners of accounts as user symbols of a {@link UserIndex}. Account numbers of up to 17 digits, i.e. card numbers,
+ * are kept as their value together with their length and need no objects, other accounts are kept by their number.
+ * Not thread-safe.
+ */
+public class AccountOwners implements AccountOwnerTable {
+    public static final int NO_OWNER = -1;
+    private static final int MAX_NUMERIC_LENGTH = 17;
+    private static final int LENGTH_BITS = 5;
+    private static final int MIN_CAPACITY = 16;
+
+    // value << 5 | length, 0 for an empty slot
+    private long[] numericAccounts = new long[MIN_CAPACITY];
+    private int[] numericOwners = new int[MIN_CAPACITY];
+    private int numericCount;
+    private String[] otherAccounts = new String[MIN_CAPACITY];
+    private int[] otherOwners = new int[MIN_CAPACITY];
+    private int otherCount;
+
+    @Override
+    public int get(String account) {
+        long key = numericKey(account);
+        if (key != 0) {
+            int slot = numericSlot(numericAccounts, key);
+            return numericAccounts[slot] == 0 ? NO_OWNER : numericOwners[slot];
+        }
+        int slot = otherSlot(otherAccounts, account);
+        return otherAccounts[slot] == null ? NO_OWNER : otherOwners[slot];
+    }
+
+    @Override
+    public void put(String account, int owner) {
+        long key = numericKey(account);
+        if (key != 0) {
+            putNumeric(key, owner);
+        } else {
+            putOther(account, owner);
+        }
+    }
+
+    @Override
+    public void putAll(AccountOwners other) {
+        for (int slot = 0; slot < other.numericAccounts.length; slot++) {
+            if (other.numericAccounts[slot] != 0) putNumeric(other.numericAccounts[slot], other.numericOwners[slot]);
+        }
+        for (int slot = 0; slot < other.otherAccounts.length; slot++) {
+            if (other.otherAccounts[slot] != null) putOther(other.otherAccounts[slot], other.otherOwners[slot]);
+        }
+    }
+
+    public int size() {
+        return numericCount + otherCount;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int slot = 0; slot < numericAccounts.length; slot++) {
+            if (numericAccounts[slot] != 0) action.accept(numericAccount(numericAccounts[slot]), numericOwners[slot]);
+        }
+        for (int slot = 0; slot < otherAccounts.length; slot++) {
+            if (otherAccounts[slot] != null) action.accept(otherAccounts[slot], otherOwners[slot]);
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size());
+        for (int slot = 0; slot < numericAccounts.length; slot++) {
+            if (numericAccounts[slot] == 0) continue;
+            out.writeUTF(numericAccount(numericAccounts[slot]));
+            out.writeInt(numericOwners[slot]);
+        }
+        for (int slot = 0; slot < otherAccounts.length; slot++) {
+            if (otherAccounts[slot] == null) continue;
+            out.writeUTF(otherAccounts[slot]);
+            out.writeInt(otherOwners[slot]);
+        }
+    }
+
+    public static AccountOwners readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        AccountOwners owners = new AccountOwners();
+        for (int i = 0; i < count; i++) {
+            owners.put(in.readUTF(), in.readInt());
+        }
+        return owners;
+    }
+
+    private void putNumeric(long key, int owner) {
+        int slot = numericSlot(numericAccounts, key);
+        numericOwners[slot] = owner;
+        if (numericAccounts[slot] != 0) return;
+        numericAccounts[slot] = key;
+        if (++numericCount * 4 > numericAccounts.length * 3) {
+            long[] accounts = new long[numericAccounts.length * 2];
+            int[] owners = new int[accounts.length];
+            for (int i = 0; i < numericAccounts.length; i++) {
+                if (numericAccounts[i] == 0) continue;
+                int newSlot = numericSlot(accounts, numericAccounts[i]);
+                accounts[newSlot] = numericAccounts[i];
+                owners[newSlot] = numericOwners[i];
+            }
+            numericAccounts = accounts;
+            numericOwners = owners;
+        }
+    }
+
+    private void putOther(String account, int owner) {
+        int slot = otherSlot(otherAccounts, account);
+        otherOwners[slot] = owner;
+        if (otherAccounts[slot] != null) return;
+        otherAccounts[slot] = account;
+        if (++otherCount * 4 > otherAccounts.length * 3) {
+            String[] accounts = new String[otherAccounts.length * 2];
+            int[] owners = new int[accounts.length];
+            for (int i = 0; i < otherAccounts.length; i++) {
+                if (otherAccounts[i] == null) continue;
+                int newSlot = otherSlot(accounts, otherAccounts[i]);
+                accounts[newSlot] = otherAccounts[i];
+                owners[newSlot] = otherOwners[i];
+            }
+            otherAccounts = accounts;
+            otherOwners = owners;
+        }
+    }
+
+    private static int numericSlot(long[] accounts, long key) {
+        int mask = accounts.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ hash >>> 32) & mask;
+        while (accounts[slot] != 0 && accounts[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int otherSlot(String[] accounts, String account) {
+        int mask = accounts.length - 1;
+        int hash = account.hashCode() * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (accounts[slot] != null && !accounts[slot].equals(account)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return key of an account number of 1 to 17 digits, 0 for any other account
+     */
+    private static long numericKey(String account) {
+        int length = account.length();
+        if (length == 0 || length > MAX_NUMERIC_LENGTH) return 0;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = account.charAt(i);
+            if (c < '0' || c > '9') return 0;
+            value = value * 10 + (c - '0');
+        }
+        return value << LENGTH_BITS | length;
+    }
+
+    private static String numericAccount(long key) {
+        int length = (int) (key & (1 << LENGTH_BITS) - 1);
+        String digits = Long.toString(key >>> LENGTH_BITS);
+        return "0".repeat(length - digits.length()) + digits;
+    }
+}
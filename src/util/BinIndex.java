@@ -0,0 +1,127 @@
+package util;
+
+import dto.BinMapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Immutable lookup structure for BIN ranges.
+ * Overlapping ranges are flattened into disjoint segments where every segment belongs to the
+ * range that comes first in the source file, so lookups give the same answer as a linear scan.
+ * A {@link ReferenceData} file holds the same segments, see {@link MappedBinIndex}.
+ */
+public class BinIndex {
+    private static final int MEMO_SIZE = 4096;
+    private static final long MEMO_MAX_PREFIX = (1L << 34) - 1;
+    private static final int MEMO_SLOT_BITS = 30;
+    private static final long MEMO_SLOT_MASK = (1L << MEMO_SLOT_BITS) - 1;
+
+    private final long[] rangeFrom;
+    private final long[] rangeTo;
+    private final BinMapping[] mappings;
+    // prefix << 30 | (segment + 2), 0 means empty entry and 1 means no segment found.
+    // The memo is shared by all threads. Opaque access keeps every entry a single atomic long,
+    // so a reader sees either a whole stale entry or a whole new one and the prefix check rejects stale ones.
+    private final AtomicLongArray memo = new AtomicLongArray(MEMO_SIZE);
+
+    public BinIndex(final List<BinMapping> binMappings) {
+        List<long[]> segments = flatten(binMappings);
+        rangeFrom = new long[segments.size()];
+        rangeTo = new long[segments.size()];
+        mappings = new BinMapping[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            long[] segment = segments.get(i);
+            rangeFrom[i] = segment[0];
+            rangeTo[i] = segment[1];
+            mappings[i] = binMappings.get((int) segment[2]);
+        }
+    }
+
+    // For subclasses that keep their segments elsewhere
+    BinIndex() {
+        rangeFrom = null;
+        rangeTo = null;
+        mappings = null;
+    }
+
+    public BinMapping find(long cardPrefix) {
+        int segment;
+        if (cardPrefix >= 0 && cardPrefix <= MEMO_MAX_PREFIX) {
+            int memoIndex = (int) (cardPrefix ^ cardPrefix >>> 12) & (MEMO_SIZE - 1);
+            long entry = memo.getOpaque(memoIndex);
+            if (entry != 0 && entry >>> MEMO_SLOT_BITS == cardPrefix) {
+                segment = (int) (entry & MEMO_SLOT_MASK) - 2;
+            } else {
+                segment = search(cardPrefix);
+                memo.setOpaque(memoIndex, cardPrefix << MEMO_SLOT_BITS | (segment + 2));
+            }
+        } else {
+            segment = search(cardPrefix);
+        }
+        return segment < 0 ? null : mapping(segment);
+    }
+
+    public int size() {
+        return mappings.length;
+    }
+
+    BinMapping mapping(int segment) {
+        return mappings[segment];
+    }
+
+    // Index of the last segment starting at or before the prefix, if the prefix is inside of it
+    int search(long cardPrefix) {
+        int index = Arrays.binarySearch(rangeFrom, cardPrefix);
+        if (index < 0) index = -index - 2;
+        if (index < 0 || cardPrefix > rangeTo[index]) return -1;
+        return index;
+    }
+
+    /**
+     * Sweeps over all range boundaries keeping the active ranges ordered by their position in the file.
+     *
+     * @return disjoint segments ordered by start as {from, to, index of the mapping}
+     */
+    static List<long[]> flatten(List<BinMapping> binMappings) {
+        List<Integer> order = new ArrayList<>();
+        List<Long> points = new ArrayList<>();
+        for (int i = 0; i < binMappings.size(); i++) {
+            BinMapping bin = binMappings.get(i);
+            if (bin.getRangeFrom() > bin.getRangeTo()) continue;
+            order.add(i);
+            points.add(bin.getRangeFrom());
+            if (bin.getRangeTo() != Long.MAX_VALUE) points.add(bin.getRangeTo() + 1);
+        }
+        order.sort(Comparator.comparingLong(i -> binMappings.get(i).getRangeFrom()));
+        long[] boundaries = points.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+
+        List<long[]> segments = new ArrayList<>();
+        PriorityQueue<Integer> active = new PriorityQueue<>();
+        int next = 0;
+        for (int p = 0; p < boundaries.length; p++) {
+            long from = boundaries[p];
+            while (next < order.size() && binMappings.get(order.get(next)).getRangeFrom() <= from) {
+                active.add(order.get(next++));
+            }
+            while (!active.isEmpty() && binMappings.get(active.peek()).getRangeTo() < from) {
+                active.poll();
+            }
+            if (active.isEmpty()) continue;
+
+            long to = p + 1 < boundaries.length ? boundaries[p + 1] - 1 : Long.MAX_VALUE;
+            int winner = active.peek();
+            long[] last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last[2] == winner && last[1] + 1 == from) {
+                last[1] = to;
+            } else {
+                segments.add(new long[]{from, to, winner});
+            }
+        }
+        return segments;
+    }
+}
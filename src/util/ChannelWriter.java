@@ -0,0 +1,128 @@
+package util;
+
+import dto.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes text to a file or any other channel through one large reusable buffer.
+ * ASCII text and amounts are put into the buffer directly, anything else is encoded with the default charset
+ * like {@link java.io.FileWriter} does.
+ */
+public class ChannelWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final String target;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private final byte[] digits = new byte[20];
+    private int position;
+
+    public ChannelWriter(final Path filePath) {
+        this.target = "file " + filePath;
+        try {
+            channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", filePath), e);
+        }
+    }
+
+    /**
+     * @param target what the channel writes to, e.g. "file a.csv", only used in error messages
+     */
+    public ChannelWriter(final WritableByteChannel channel, final String target) {
+        this.channel = channel;
+        this.target = target;
+    }
+
+    public ChannelWriter write(byte b) {
+        if (position == buffer.length) flush();
+        buffer[position++] = b;
+        return this;
+    }
+
+    public ChannelWriter write(byte[] bytes) {
+        if (buffer.length - position < bytes.length) {
+            flush();
+            if (bytes.length > buffer.length) {
+                writeToChannel(ByteBuffer.wrap(bytes));
+                return this;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    public ChannelWriter write(String text) {
+        int length = text.length();
+        if (buffer.length - position < length) flush();
+        if (length > buffer.length) return write(text.getBytes(Charset.defaultCharset()));
+
+        int start = position;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                position = start;
+                return write(text.getBytes(Charset.defaultCharset()));
+            }
+            buffer[position++] = (byte) c;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the amount with exactly two decimals, see {@link Money#appendTo(StringBuilder)}.
+     */
+    public ChannelWriter write(Money amount) {
+        if (!amount.isCents()) return write(amount.toString());
+
+        long cents = amount.getCents();
+        if (cents < 0) write((byte) '-');
+        long abs = Math.abs(cents);
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + abs % 10);
+            abs /= 10;
+            if (count == 2) digits[count++] = '.';
+        } while (abs > 0 || count < 4);
+        if (buffer.length - position < count) flush();
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+        return this;
+    }
+
+    public void flush() {
+        byteBuffer.clear().limit(position);
+        writeToChannel(byteBuffer);
+        position = 0;
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to %s", target), e);
+        }
+    }
+
+    private void writeToChannel(ByteBuffer source) {
+        try {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to %s", target), e);
+        }
+    }
+}
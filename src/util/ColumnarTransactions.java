@@ -0,0 +1,355 @@
+package util;
+
+import dto.Money;
+import dto.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Transactions file converted once into a binary columnar file that later runs memory-map and read without parsing
+ * text. Every line of the transactions file becomes a row, lines that the CSV reader skips are kept with their reason
+ * and content, so reading the converted file gives the same transactions and skipped lines as reading the original.
+ * Skipped lines are reported with the line numbers of the original file.
+ * <p>
+ * Layout, big-endian: header, then one column after the other: status (0 or 1 + reject reason), flags, transaction id
+ * as the two longs of a UUID, user, account, amount in cents, extra text, followed by the offsets and the UTF-8 bytes
+ * of the dictionary. User ids, accounts and everything that does not fit into a column are dictionary entries.
+ */
+public class ColumnarTransactions {
+    public static final String SUFFIX = ".tcol";
+    private static final int MAGIC = 0x544C5443;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    // Number of the first line after the heading line
+    private static final int FIRST_LINE = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Sections of the file after the header, in their order
+    private static final int STATUS = 0;
+    private static final int FLAGS = 1;
+    private static final int ID_HIGH = 2;
+    private static final int ID_LOW = 3;
+    private static final int USER = 4;
+    private static final int ACCOUNT = 5;
+    private static final int AMOUNT = 6;
+    private static final int EXTRA = 7;
+    private static final int TEXT_OFFSETS = 8;
+    private static final int TEXTS = 9;
+    private static final int SECTIONS = 10;
+    private static final long ROW_SIZE = 1 + 1 + 8 + 8 + 4 + 4 + 8 + 4;
+    // Every column has to fit into one mapping
+    private static final long MAX_ROWS = Integer.MAX_VALUE / 8;
+
+    private static final int FLAG_ID_TEXT = 1;
+    private static final int FLAG_AMOUNT_TEXT = 1 << 1;
+    private static final int FLAG_TRANSFER = 1 << 2;
+    private static final int TYPE_SHIFT = 3;
+    private static final int TYPE_DEPOSIT = 0;
+    private static final int TYPE_WITHDRAW = 1;
+    private static final int TYPE_TEXT = 2;
+    private static final RejectLog.Reason[] REASONS = RejectLog.Reason.values();
+
+    /**
+     * Converts a transactions file: {@code ColumnarTransactions <transactions file> <columnar file>}
+     */
+    public static void main(final String[] args) {
+        if (args.length != 2) throw new RuntimeException("Wrong number of file paths provided. Expected: 2. Actual: " + args.length);
+        convert(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /**
+     * @return true if the file is a columnar transactions file, which is told by its name
+     */
+    public static boolean isColumnar(final Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Columns are written to temporary files next to the columnar file first and then put together,
+     * so only the dictionary is kept in memory.
+     */
+    public static void convert(final Path transactionsFile, final Path columnarFile) {
+        Path directory = columnarFile.toAbsolutePath().getParent();
+        Path[] sections = new Path[SECTIONS];
+        Path temporary = null;
+        try {
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = Files.createTempFile(directory, columnarFile.getFileName().toString(), ".tmp");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            try (Converter converter = new Converter(sections); BufferedReader br = Reader.openLines(transactionsFile)) {
+                br.readLine(); // For skipping heading line
+                String line;
+                while ((line = br.readLine()) != null) {
+                    converter.add(line, transactionsFile.toString());
+                }
+                converter.finish();
+                header.putInt(MAGIC).putInt(VERSION).putLong(converter.rowCount)
+                        .putInt(converter.dictionary.size()).putInt(converter.dictionaryBytes);
+            }
+            temporary = columnarFile.resolveSibling(columnarFile.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(header.flip());
+                for (Path section : sections) {
+                    try (FileChannel in = FileChannel.open(section, StandardOpenOption.READ)) {
+                        long position = 0;
+                        while (position < in.size()) {
+                            position += in.transferTo(position, in.size() - position, out);
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, columnarFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", columnarFile), e);
+        } finally {
+            for (Path section : sections) {
+                deleteTemporary(section);
+            }
+            // Already moved if the conversion succeeded
+            deleteTemporary(temporary);
+        }
+    }
+
+    private static void deleteTemporary(Path file) {
+        try {
+            if (file != null) Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Only a temporary file is left behind
+        }
+    }
+
+    /**
+     * Maps a columnar file, the transactions are handed out in the order of the original file.
+     */
+    public static TransactionSource open(final Path columnarFile) {
+        try (FileChannel channel = FileChannel.open(columnarFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new RuntimeException(String.format("File %s is not a columnar transactions file of a supported version", columnarFile));
+            }
+            long rows = header.getLong(8);
+            int dictionarySize = header.getInt(16);
+            int dictionaryBytes = header.getInt(20);
+            if (rows < 0 || rows > MAX_ROWS || dictionarySize < 0 || dictionaryBytes < 0
+                    || HEADER_SIZE + ROW_SIZE * rows + 4L * (dictionarySize + 1) + dictionaryBytes != channel.size()) {
+                throw new RuntimeException(String.format("File %s is not complete", columnarFile));
+            }
+            Source source = new Source(columnarFile.toString(), (int) rows);
+            long position = HEADER_SIZE;
+            source.statuses = channel.map(FileChannel.MapMode.READ_ONLY, position, rows);
+            source.flags = channel.map(FileChannel.MapMode.READ_ONLY, position += rows, rows);
+            source.idHigh = channel.map(FileChannel.MapMode.READ_ONLY, position += rows, 8 * rows).asLongBuffer();
+            source.idLow = channel.map(FileChannel.MapMode.READ_ONLY, position += 8 * rows, 8 * rows).asLongBuffer();
+            source.users = channel.map(FileChannel.MapMode.READ_ONLY, position += 8 * rows, 4 * rows).asIntBuffer();
+            source.accounts = channel.map(FileChannel.MapMode.READ_ONLY, position += 4 * rows, 4 * rows).asIntBuffer();
+            source.amounts = channel.map(FileChannel.MapMode.READ_ONLY, position += 4 * rows, 8 * rows).asLongBuffer();
+            source.extras = channel.map(FileChannel.MapMode.READ_ONLY, position += 8 * rows, 4 * rows).asIntBuffer();
+            source.textOffsets = channel.map(FileChannel.MapMode.READ_ONLY, position += 4 * rows, 4L * (dictionarySize + 1)).asIntBuffer();
+            source.texts = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * (dictionarySize + 1), dictionaryBytes);
+            source.decodedTexts = new String[dictionarySize];
+            return source;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", columnarFile), e);
+        }
+    }
+
+    private static final class Converter implements AutoCloseable {
+        private final DataOutputStream[] out = new DataOutputStream[SECTIONS];
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final CapturingRejectSink rejects = new CapturingRejectSink();
+        private long rowCount;
+        private int dictionaryBytes;
+
+        private Converter(Path[] sections) throws IOException {
+            try {
+                for (int i = 0; i < SECTIONS; i++) {
+                    out[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sections[i]), BUFFER_SIZE));
+                }
+            } catch (IOException e) {
+                // Not closed by the caller when the constructor fails
+                try {
+                    close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+
+        private void add(String line, String filePath) throws IOException {
+            if (rowCount == MAX_ROWS) throw new IOException("Too many lines for one columnar file");
+            rejects.reason = null;
+            Transaction transaction = Reader.processTransaction(line, filePath, FIRST_LINE + rowCount, rejects);
+            rowCount++;
+            if (transaction == null) {
+                out[STATUS].writeByte(1 + rejects.reason.ordinal());
+                out[FLAGS].writeByte(0);
+                out[ID_HIGH].writeLong(0);
+                out[ID_LOW].writeLong(0);
+                out[USER].writeInt(-1);
+                out[ACCOUNT].writeInt(-1);
+                out[AMOUNT].writeLong(0);
+                out[EXTRA].writeInt(textIndex(line));
+                return;
+            }
+            int flags = 0;
+            String id = transaction.getTransactionId();
+            UUID uuid = uuid(id);
+            if (uuid == null) flags |= FLAG_ID_TEXT;
+            Money amount = transaction.getAmount();
+            if (!amount.isCents()) flags |= FLAG_AMOUNT_TEXT;
+            if (transaction.getMethod().equals(Transaction.PAYMENT_METHOD_TRANSFER)) flags |= FLAG_TRANSFER;
+            int type = switch (transaction.getType()) {
+                case Transaction.TRANSACTION_TYPE_DEPOSIT -> TYPE_DEPOSIT;
+                case Transaction.TRANSACTION_TYPE_WITHDRAW -> TYPE_WITHDRAW;
+                default -> TYPE_TEXT;
+            };
+            out[STATUS].writeByte(0);
+            out[FLAGS].writeByte(flags | type << TYPE_SHIFT);
+            out[ID_HIGH].writeLong(uuid == null ? 0 : uuid.getMostSignificantBits());
+            out[ID_LOW].writeLong(uuid == null ? textIndex(id) : uuid.getLeastSignificantBits());
+            out[USER].writeInt(textIndex(transaction.getUserId()));
+            out[ACCOUNT].writeInt(textIndex(transaction.getAccountNumber()));
+            out[AMOUNT].writeLong(amount.isCents() ? amount.getCents() : textIndex(amount.toBigDecimal().toString()));
+            out[EXTRA].writeInt(type == TYPE_TEXT ? textIndex(transaction.getType()) : -1);
+        }
+
+        private int textIndex(String text) throws IOException {
+            Integer index = dictionary.get(text);
+            if (index != null) return index;
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if ((long) dictionaryBytes + bytes.length > Integer.MAX_VALUE) throw new IOException("Too much text for one columnar file");
+            index = dictionary.size();
+            dictionary.put(text, index);
+            out[TEXT_OFFSETS].writeInt(dictionaryBytes);
+            out[TEXTS].write(bytes);
+            dictionaryBytes += bytes.length;
+            return index;
+        }
+
+        private void finish() throws IOException {
+            // End of the last text
+            out[TEXT_OFFSETS].writeInt(dictionaryBytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException error = null;
+            for (DataOutputStream section : out) {
+                try {
+                    if (section != null) section.close();
+                } catch (IOException e) {
+                    if (error == null) error = e;
+                    else error.addSuppressed(e);
+                }
+            }
+            if (error != null) throw error;
+        }
+    }
+
+    /**
+     * Only a canonical UUID is kept as two longs, anything else would not be written back the same way.
+     */
+    private static UUID uuid(String id) {
+        if (id.length() != 36) return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class CapturingRejectSink implements RejectSink {
+        private RejectLog.Reason reason;
+
+        @Override
+        public void reject(String file, long lineNumber, RejectLog.Reason reason, String line) {
+            this.reason = reason;
+        }
+    }
+
+    private static final class Source implements TransactionSource {
+        private final String filePath;
+        private final int rows;
+        private ByteBuffer statuses;
+        private ByteBuffer flags;
+        private LongBuffer idHigh;
+        private LongBuffer idLow;
+        private IntBuffer users;
+        private IntBuffer accounts;
+        private LongBuffer amounts;
+        private IntBuffer extras;
+        private IntBuffer textOffsets;
+        private ByteBuffer texts;
+        // User ids and accounts repeat, every text is decoded only once
+        private String[] decodedTexts;
+        private int row;
+
+        private Source(String filePath, int rows) {
+            this.filePath = filePath;
+            this.rows = rows;
+        }
+
+        @Override
+        public Transaction next() {
+            for (; row < rows; row++) {
+                int status = statuses.get(row);
+                if (status != 0) {
+                    RejectLog.shared().reject(filePath, FIRST_LINE + row, REASONS[status - 1], text(extras.get(row)));
+                    continue;
+                }
+                int flag = flags.get(row);
+                Transaction transaction = new Transaction();
+                transaction.setTransactionId((flag & FLAG_ID_TEXT) != 0 ? text((int) idLow.get(row))
+                        : new UUID(idHigh.get(row), idLow.get(row)).toString());
+                transaction.setUserId(text(users.get(row)));
+                transaction.setType(switch (flag >>> TYPE_SHIFT) {
+                    case TYPE_DEPOSIT -> Transaction.TRANSACTION_TYPE_DEPOSIT;
+                    case TYPE_WITHDRAW -> Transaction.TRANSACTION_TYPE_WITHDRAW;
+                    default -> text(extras.get(row));
+                });
+                transaction.setAmount((flag & FLAG_AMOUNT_TEXT) != 0 ? Money.of(new BigDecimal(text((int) amounts.get(row))))
+                        : Money.ofCents(amounts.get(row)));
+                transaction.setMethod((flag & FLAG_TRANSFER) != 0 ? Transaction.PAYMENT_METHOD_TRANSFER : Transaction.PAYMENT_METHOD_CARD);
+                transaction.setAccountNumber(text(accounts.get(row)));
+                row++;
+                return transaction;
+            }
+            return null;
+        }
+
+        private String text(int index) {
+            String text = decodedTexts[index];
+            if (text == null) {
+                int from = textOffsets.get(index);
+                byte[] bytes = new byte[textOffsets.get(index + 1) - from];
+                texts.get(from, bytes);
+                text = new String(bytes, StandardCharsets.UTF_8);
+                decodedTexts[index] = text;
+            }
+            return text;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package util;
+
+import dto.DeclineReason;
+import dto.Event;
+import dto.Money;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps events in parallel arrays: an outcome code, the transaction id and the arguments of the decline reason.
+ * Amount arguments are kept as cents, messages are only rendered when an event is read back.
+ * Events added through {@link #accept(Event)} keep their own status and message.
+ */
+public class EventLog implements EventSink {
+    private static final byte CODE_APPROVED = 0;
+    private static final byte CODE_TEXT = 1;
+    private static final byte CODE_FIRST_REASON = 2;
+    private static final DeclineReason[] REASONS = DeclineReason.values();
+
+    private byte[] codes = new byte[1024];
+    private String[] transactionIds = new String[1024];
+    private int[] argumentOffsets = new int[1024];
+    private int size;
+
+    private long[] amounts = new long[256];
+    private int amountCount;
+    // Amounts that do not fit into cents, by their offset in amounts
+    private final Map<Integer, Money> bigAmounts = new HashMap<>();
+
+    private String[] texts = new String[256];
+    private int textCount;
+
+    @Override
+    public void accept(Event event) {
+        if (event.reason == null && event.status.equals(Event.STATUS_APPROVED) && event.message.equals(Event.MESSAGE_OK)) {
+            approved(event.transactionId);
+            return;
+        }
+        add(CODE_TEXT, event.transactionId, textCount);
+        addText(event.status);
+        addText(event.message);
+    }
+
+    @Override
+    public void approved(String transactionId) {
+        add(CODE_APPROVED, transactionId, 0);
+    }
+
+    @Override
+    public void declined(String transactionId, DeclineReason reason, Object... args) {
+        if (reason.hasAmountArguments()) {
+            add((byte) (CODE_FIRST_REASON + reason.ordinal()), transactionId, amountCount);
+            for (Object arg : args) {
+                addAmount((Money) arg);
+            }
+        } else {
+            add((byte) (CODE_FIRST_REASON + reason.ordinal()), transactionId, textCount);
+            for (Object arg : args) {
+                addText(String.valueOf(arg));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all events but keeps the arrays, so the log can be refilled without allocating.
+     */
+    public void clear() {
+        size = 0;
+        amountCount = 0;
+        textCount = 0;
+        bigAmounts.clear();
+    }
+
+    public String getTransactionId(int index) {
+        return transactionIds[index];
+    }
+
+    /**
+     * @return decline reason of the event, null for approved events and events with a plain text message
+     */
+    public DeclineReason getReason(int index) {
+        return codes[index] >= CODE_FIRST_REASON ? REASONS[codes[index] - CODE_FIRST_REASON] : null;
+    }
+
+    public Event get(int index) {
+        switch (codes[index]) {
+            case CODE_APPROVED:
+                return new Event(transactionIds[index], Event.STATUS_APPROVED, Event.MESSAGE_OK);
+            case CODE_TEXT:
+                return new Event(transactionIds[index], texts[argumentOffsets[index]], texts[argumentOffsets[index] + 1]);
+            default:
+                DeclineReason reason = getReason(index);
+                return new Event(transactionIds[index], reason, reason.format(getArguments(index)));
+        }
+    }
+
+    /**
+     * Passes the event on to another sink the same way it was added to this one.
+     */
+    public void copyTo(int index, EventSink sink) {
+        switch (codes[index]) {
+            case CODE_APPROVED -> sink.approved(transactionIds[index]);
+            case CODE_TEXT -> sink.accept(get(index));
+            default -> sink.declined(transactionIds[index], getReason(index), getArguments(index));
+        }
+    }
+
+    private Object[] getArguments(int index) {
+        DeclineReason reason = getReason(index);
+        Object[] args = new Object[reason.getArgumentCount()];
+        int offset = argumentOffsets[index];
+        for (int i = 0; i < args.length; i++) {
+            if (reason.hasAmountArguments()) {
+                Money big = bigAmounts.get(offset + i);
+                args[i] = big != null ? big : Money.ofCents(amounts[offset + i]);
+            } else {
+                args[i] = texts[offset + i];
+            }
+        }
+        return args;
+    }
+
+    private void add(byte code, String transactionId, int argumentOffset) {
+        if (size == codes.length) {
+            int capacity = size * 2;
+            codes = Arrays.copyOf(codes, capacity);
+            transactionIds = Arrays.copyOf(transactionIds, capacity);
+            argumentOffsets = Arrays.copyOf(argumentOffsets, capacity);
+        }
+        codes[size] = code;
+        transactionIds[size] = transactionId;
+        argumentOffsets[size] = argumentOffset;
+        size++;
+    }
+
+    private void addAmount(Money amount) {
+        if (amountCount == amounts.length) amounts = Arrays.copyOf(amounts, amountCount * 2);
+        if (amount.isCents()) {
+            amounts[amountCount] = amount.getCents();
+        } else {
+            bigAmounts.put(amountCount, amount);
+        }
+        amountCount++;
+    }
+
+    private void addText(String text) {
+        if (textCount == texts.length) texts = Arrays.copyOf(texts, textCount * 2);
+        texts[textCount++] = text;
+    }
+}
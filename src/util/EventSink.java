@@ -0,0 +1,25 @@
+package util;
+
+import dto.DeclineReason;
+import dto.Event;
+
+/**
+ * Receives processing events in the order they are produced.
+ * Sinks that can render messages themselves override {@link #approved} and {@link #declined},
+ * so no {@link Event} or message string is created for them.
+ */
+public interface EventSink extends AutoCloseable {
+    void accept(Event event);
+
+    default void approved(String transactionId) {
+        accept(new Event(transactionId, Event.STATUS_APPROVED, Event.MESSAGE_OK));
+    }
+
+    default void declined(String transactionId, DeclineReason reason, Object... args) {
+        accept(new Event(transactionId, reason, reason.format(args)));
+    }
+
+    @Override
+    default void close() {
+    }
+}
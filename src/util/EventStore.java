@@ -0,0 +1,409 @@
+package util;
+
+import dto.DeclineReason;
+import dto.Event;
+import dto.Money;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Events of a run in a binary file indexed by transaction id, so the events of one transaction can be looked up
+ * without reading the events file. The file is memory-mapped and nothing of it is loaded into the heap up front.
+ * Runs write it next to the events file if {@code teldrassil.eventStore} is true.
+ * <p>
+ * Layout, big-endian: header, the event records in the order they were written, the bucket directory and the index
+ * entries. An entry is the hash of a transaction id and the offset of its record, entries are grouped by bucket, which
+ * is given by the low bits of the hash, and the directory holds the index of the first entry of every bucket.
+ * Events with the same transaction id get an entry each, in the order they were written.
+ * <p>
+ * Like in {@link EventLog} a record keeps the decline reason and its arguments, messages are only rendered when an
+ * event is read back. Transaction ids that are UUIDs are kept as two longs.
+ */
+public class EventStore {
+    public static final String SUFFIX = ".tevt";
+    private static final int MAGIC = 0x544C4556;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int ENTRY_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Mapped in segments, so no part of the file is limited to 2 GB
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int CODE_APPROVED = 0;
+    private static final int CODE_TEXT = 1;
+    private static final int CODE_FIRST_REASON = 2;
+    // Set in the code of records whose transaction id is a UUID
+    private static final int CODE_UUID = 0x80;
+    // Amount that is followed by its text, as it does not fit into cents
+    private static final long BIG_AMOUNT = Long.MIN_VALUE;
+    private static final DeclineReason[] REASONS = DeclineReason.values();
+
+    private final long size;
+    private final long bucketMask;
+    private final MappedByteBuffer[] records;
+    private final MappedByteBuffer[] directory;
+    private final MappedByteBuffer[] entries;
+
+    private EventStore(long size, long bucketMask, MappedByteBuffer[] records, MappedByteBuffer[] directory,
+                       MappedByteBuffer[] entries) {
+        this.size = size;
+        this.bucketMask = bucketMask;
+        this.records = records;
+        this.directory = directory;
+        this.entries = entries;
+    }
+
+    /**
+     * Prints the events of transactions: {@code EventStore <event store file> [<transaction id>...]},
+     * transaction ids are read from standard input, one per line, if none are given.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) throw new RuntimeException("Wrong number of arguments provided. Expected: at least 1. Actual: " + args.length);
+        EventStore store = open(Paths.get(args[0]));
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                print(store, args[i]);
+            }
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String transactionId;
+        while ((transactionId = in.readLine()) != null) {
+            if (!transactionId.isBlank()) print(store, transactionId.strip());
+        }
+    }
+
+    private static void print(EventStore store, String transactionId) {
+        List<Event> events = store.find(transactionId);
+        if (events.isEmpty()) System.out.printf("No events for transaction %s%n", transactionId);
+        for (Event event : events) {
+            System.out.printf("%s,%s,%s%n", event.transactionId, event.status, event.message);
+        }
+    }
+
+    /**
+     * @return path of the event store kept next to an events file, e.g. {@code events.tevt} for {@code events.csv}
+     */
+    public static Path pathFor(final Path eventsFile) {
+        String name = eventsFile.getFileName().toString().replaceFirst("(\\.csv)?(\\.gz)?$", "");
+        return eventsFile.resolveSibling(name + SUFFIX);
+    }
+
+    /**
+     * @return sink that passes the events on to another sink and also writes them to the event store,
+     * the store is complete once the sink is closed
+     */
+    public static EventSink writeAlongside(final EventSink events, final Path storeFile) {
+        return new Builder(events, storeFile);
+    }
+
+    public static EventStore open(final Path storeFile) {
+        try (FileChannel channel = FileChannel.open(storeFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new RuntimeException(String.format("File %s is not an event store of a supported version", storeFile));
+            }
+            long size = header.getLong(8);
+            long buckets = header.getLong(16);
+            long recordsBytes = header.getLong(24);
+            long directoryStart = HEADER_SIZE + recordsBytes;
+            long entriesStart = directoryStart + 4 * (buckets + 1);
+            if (size < 0 || size > Integer.MAX_VALUE || buckets < 1 || Long.bitCount(buckets) != 1 || recordsBytes < 0
+                    || entriesStart + ENTRY_SIZE * size != channel.size()) {
+                throw new RuntimeException(String.format("File %s is not complete", storeFile));
+            }
+            return new EventStore(size, buckets - 1, map(channel, HEADER_SIZE, recordsBytes),
+                    map(channel, directoryStart, entriesStart - directoryStart), map(channel, entriesStart, ENTRY_SIZE * size));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", storeFile), e);
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long offset = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(SEGMENT_SIZE, length - offset));
+        }
+        return segments;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return events of the transaction in the order they were written, empty if there are none
+     */
+    public List<Event> find(String transactionId) {
+        List<Event> events = new ArrayList<>(1);
+        long hash = hash(transactionId);
+        long bucket = hash & bucketMask;
+        int to = getInt(directory, 4 * (bucket + 1));
+        for (int entry = getInt(directory, 4 * bucket); entry < to; entry++) {
+            if (getLong(entries, (long) ENTRY_SIZE * entry) != hash) continue;
+            Event event = read(new Cursor(records, getLong(entries, (long) ENTRY_SIZE * entry + 8)), transactionId);
+            if (event != null) events.add(event);
+        }
+        return events;
+    }
+
+    // Null if the record belongs to another transaction id with the same hash
+    private static Event read(Cursor record, String transactionId) {
+        int code = record.nextByte() & 0xFF;
+        if ((code & CODE_UUID) != 0) {
+            if (!TransactionIdSet.isUuid(transactionId)
+                    || record.nextLong() != TransactionIdSet.mostSignificantBits(transactionId)
+                    || record.nextLong() != TransactionIdSet.leastSignificantBits(transactionId)) {
+                return null;
+            }
+        } else if (!record.nextString().equals(transactionId)) {
+            return null;
+        }
+        code &= ~CODE_UUID;
+        if (code == CODE_APPROVED) return new Event(transactionId, Event.STATUS_APPROVED, Event.MESSAGE_OK);
+        if (code == CODE_TEXT) return new Event(transactionId, record.nextString(), record.nextString());
+        DeclineReason reason = REASONS[code - CODE_FIRST_REASON];
+        Object[] args = new Object[reason.getArgumentCount()];
+        for (int i = 0; i < args.length; i++) {
+            if (!reason.hasAmountArguments()) {
+                args[i] = record.nextString();
+            } else {
+                long cents = record.nextLong();
+                args[i] = cents == BIG_AMOUNT ? Money.of(new BigDecimal(record.nextString())) : Money.ofCents(cents);
+            }
+        }
+        return new Event(transactionId, reason, reason.format(args));
+    }
+
+    private static int getInt(MappedByteBuffer[] segments, long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    // Entries never cross a segment, records may
+    private static long getLong(MappedByteBuffer[] segments, long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private static long hash(String transactionId) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < transactionId.length(); i++) {
+            hash = (hash ^ transactionId.charAt(i)) * 0x100000001B3L;
+        }
+        // Low bits pick the bucket, so the high bits are mixed into them
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        return hash ^ hash >>> 33;
+    }
+
+    /**
+     * Reads the values of a record one after another.
+     */
+    private static final class Cursor {
+        private final MappedByteBuffer[] segments;
+        private long position;
+
+        private Cursor(MappedByteBuffer[] segments, long position) {
+            this.segments = segments;
+            this.position = position;
+        }
+
+        private byte nextByte() {
+            return nextBytes(1)[0];
+        }
+
+        private long nextLong() {
+            return ByteBuffer.wrap(nextBytes(8)).getLong();
+        }
+
+        private String nextString() {
+            return new String(nextBytes(ByteBuffer.wrap(nextBytes(4)).getInt()), StandardCharsets.UTF_8);
+        }
+
+        private byte[] nextBytes(int length) {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                int offset = (int) (position & (SEGMENT_SIZE - 1));
+                int count = Math.min(length - copied, segment.limit() - offset);
+                segment.get(offset, bytes, copied, count);
+                copied += count;
+                position += count;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Records are written to a temporary file while events arrive, only hashes and offsets are kept in memory
+     * until the index is appended on close.
+     */
+    private static final class Builder implements EventSink {
+        private final EventSink events;
+        private final Path storeFile;
+        private final Path temporary;
+        private final DataOutputStream out;
+        private long[] hashes = new long[1024];
+        private long[] offsets = new long[1024];
+        private int size;
+        // DataOutputStream counts written bytes in an int
+        private long recordsBytes;
+
+        private Builder(EventSink events, Path storeFile) {
+            this.events = events;
+            this.storeFile = storeFile;
+            this.temporary = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE));
+                // Written again once the counts are known
+                out.write(new byte[HEADER_SIZE]);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Can not write to file %s", storeFile), e);
+            }
+        }
+
+        @Override
+        public void accept(Event event) {
+            events.accept(event);
+            try {
+                if (event.reason != null && event.reason.getArgumentCount() == 0) {
+                    add(event.transactionId, CODE_FIRST_REASON + event.reason.ordinal());
+                } else if (event.status.equals(Event.STATUS_APPROVED) && event.message.equals(Event.MESSAGE_OK)) {
+                    add(event.transactionId, CODE_APPROVED);
+                } else {
+                    add(event.transactionId, CODE_TEXT);
+                    writeString(event.status);
+                    writeString(event.message);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Can not write to file %s", temporary), e);
+            }
+        }
+
+        @Override
+        public void approved(String transactionId) {
+            events.approved(transactionId);
+            try {
+                add(transactionId, CODE_APPROVED);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Can not write to file %s", temporary), e);
+            }
+        }
+
+        @Override
+        public void declined(String transactionId, DeclineReason reason, Object... args) {
+            events.declined(transactionId, reason, args);
+            try {
+                add(transactionId, CODE_FIRST_REASON + reason.ordinal());
+                for (Object arg : args) {
+                    if (!(arg instanceof Money amount)) {
+                        writeString(String.valueOf(arg));
+                    } else if (amount.isCents()) {
+                        writeLong(amount.getCents());
+                    } else {
+                        writeLong(BIG_AMOUNT);
+                        writeString(amount.toBigDecimal().toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Can not write to file %s", temporary), e);
+            }
+        }
+
+        // Starts the record with its code and transaction id
+        private void add(String transactionId, int code) throws IOException {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            hashes[size] = hash(transactionId);
+            offsets[size] = recordsBytes;
+            size++;
+            if (TransactionIdSet.isUuid(transactionId)) {
+                out.writeByte(code | CODE_UUID);
+                recordsBytes++;
+                writeLong(TransactionIdSet.mostSignificantBits(transactionId));
+                writeLong(TransactionIdSet.leastSignificantBits(transactionId));
+            } else {
+                out.writeByte(code);
+                recordsBytes++;
+                writeString(transactionId);
+            }
+        }
+
+        private void writeLong(long value) throws IOException {
+            out.writeLong(value);
+            recordsBytes += 8;
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            recordsBytes += 4 + bytes.length;
+        }
+
+        @Override
+        public void close() {
+            try {
+                events.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private void finish() {
+            try {
+                // One or two entries per bucket on average
+                int buckets = Integer.highestOneBit(Math.max(size, 1));
+                long[] order = new long[size];
+                for (int i = 0; i < size; i++) {
+                    // Index in the low bits keeps the entries of a bucket in the order they were written
+                    order[i] = (hashes[i] & (buckets - 1)) << 31 | i;
+                }
+                Arrays.sort(order);
+                int entry = 0;
+                for (long bucket = 0; bucket <= buckets; bucket++) {
+                    while (entry < size && order[entry] >>> 31 < bucket) {
+                        entry++;
+                    }
+                    out.writeInt(entry);
+                }
+                for (long key : order) {
+                    int i = (int) (key & Integer.MAX_VALUE);
+                    out.writeLong(hashes[i]);
+                    out.writeLong(offsets[i]);
+                }
+                out.close();
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION)
+                            .putLong(size).putLong(buckets).putLong(recordsBytes).flip(), 0);
+                }
+                Files.move(temporary, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Can not write to file %s", storeFile), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import java.math.BigInteger;
+
+/**
+ * IBAN check digit validation (mod 97) with a small cache of recent results.
+ * Not thread-safe, every processor keeps its own instance.
+ */
+public class IbanValidator {
+    public enum Result {
+        VALID,
+        INVALID,
+        // Account number can not be turned into a number at all
+        MALFORMED
+    }
+
+    private static final int MIN_LENGTH = 15;
+    private static final int MAX_LENGTH = 34;
+    private static final int DEFAULT_CACHE_SIZE = 8192;
+    private static final Result[] RESULTS = Result.values();
+
+    private final String[] cachedIbans;
+    private final byte[] cachedResults;
+
+    public IbanValidator() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public IbanValidator(int cacheSize) {
+        int size = Integer.highestOneBit(Math.max(cacheSize, 1));
+        cachedIbans = new String[size];
+        cachedResults = new byte[size];
+    }
+
+    public Result validate(String iban) {
+        int hash = iban.hashCode();
+        int index = (hash ^ hash >>> 16) & (cachedIbans.length - 1);
+        if (iban.equals(cachedIbans[index])) return RESULTS[cachedResults[index]];
+
+        Result result = check(iban);
+        cachedIbans[index] = iban;
+        cachedResults[index] = (byte) result.ordinal();
+        return result;
+    }
+
+    public static Result check(String iban) {
+        if (iban.length() < MIN_LENGTH || iban.length() > MAX_LENGTH) return Result.INVALID;
+
+        // Country code and check digits are moved to the end, letters count as two digits (A = 10 ... Z = 35)
+        int remainder = 0;
+        int length = iban.length();
+        for (int i = 0; i < length; i++) {
+            char c = iban.charAt(i + 4 < length ? i + 4 : i + 4 - length);
+            if (c >= '0' && c <= '9') {
+                remainder = (remainder * 10 + c - '0') % 97;
+            } else if (c >= 'A' && c <= 'Z') {
+                remainder = (remainder * 100 + c - 'A' + 10) % 97;
+            } else if (c >= 'a' && c <= 'z') {
+                remainder = (remainder * 100 + c - 'a' + 10) % 97;
+            } else {
+                return checkSlow(iban);
+            }
+        }
+        return remainder == 1 ? Result.VALID : Result.INVALID;
+    }
+
+    // Handles everything outside of ASCII letters and digits the same way as the original BigInteger check
+    private static Result checkSlow(String iban) {
+        StringBuilder digits = new StringBuilder(iban.length() * 2);
+        for (char c : (iban.substring(4) + iban.substring(0, 4)).toCharArray()) {
+            if (Character.isLetter(c)) {
+                digits.append(Character.getNumericValue(c));
+            } else {
+                digits.append(c);
+            }
+        }
+        try {
+            BigInteger checkNumber = new BigInteger(digits.toString());
+            return checkNumber.remainder(BigInteger.valueOf(97)).equals(BigInteger.ONE) ? Result.VALID : Result.INVALID;
+        } catch (Exception e) {
+            return Result.MALFORMED;
+        }
+    }
+}
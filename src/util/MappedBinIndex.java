@@ -0,0 +1,65 @@
+package util;
+
+import dto.BinMapping;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * {@link BinIndex} over the segments of a mapped {@link ReferenceData} file.
+ * Mappings are only decoded once a lookup hits them.
+ */
+final class MappedBinIndex extends BinIndex {
+    private final LongBuffer rangeFrom;
+    private final LongBuffer rangeTo;
+    private final IntBuffer segmentMappings;
+    private final AtomicReferenceArray<BinMapping> mappings;
+    private final IntFunction<BinMapping> mappingReader;
+
+    /**
+     * @param segmentMappings index of the mapping of every segment
+     * @param mappingReader   decodes the mapping with the given index
+     */
+    MappedBinIndex(LongBuffer rangeFrom, LongBuffer rangeTo, IntBuffer segmentMappings, int mappingCount,
+                   IntFunction<BinMapping> mappingReader) {
+        this.rangeFrom = rangeFrom;
+        this.rangeTo = rangeTo;
+        this.segmentMappings = segmentMappings;
+        this.mappings = new AtomicReferenceArray<>(mappingCount);
+        this.mappingReader = mappingReader;
+    }
+
+    @Override
+    public int size() {
+        return segmentMappings.limit();
+    }
+
+    @Override
+    BinMapping mapping(int segment) {
+        int index = segmentMappings.get(segment);
+        BinMapping mapping = mappings.get(index);
+        if (mapping == null) {
+            mapping = mappingReader.apply(index);
+            mappings.set(index, mapping);
+        }
+        return mapping;
+    }
+
+    @Override
+    int search(long cardPrefix) {
+        int low = 0;
+        int high = rangeFrom.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (rangeFrom.get(middle) <= cardPrefix) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (high < 0 || cardPrefix > rangeTo.get(high)) return -1;
+        return high;
+    }
+}
@@ -0,0 +1,199 @@
+package util;
+
+import dto.Money;
+import dto.Transaction;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads transactions straight from a memory-mapped file.
+ * Plain ASCII lines are parsed in place; every line this parser is not sure about goes through
+ * {@link Reader#processTransaction(String, String, long, RejectSink)}, so skipped lines are exactly the same as with the line reader.
+ */
+public class MappedTransactionReader implements TransactionSource {
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final int FIELDS = 6;
+    private static final byte[] DEPOSIT = Transaction.TRANSACTION_TYPE_DEPOSIT.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WITHDRAW = Transaction.TRANSACTION_TYPE_WITHDRAW.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CARD = Transaction.PAYMENT_METHOD_CARD.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER = Transaction.PAYMENT_METHOD_TRANSFER.getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final String filePath;
+    private final RejectSink rejects;
+    // Lines read so far, counted from the first line of the range
+    private long lineNumber;
+    private final long fileSize;
+    private final long endOffset;
+    private MappedByteBuffer buffer;
+    private long windowStart;
+    private int position;
+    private byte[] line = new byte[256];
+    private final int[] commas = new int[FIELDS];
+
+    public MappedTransactionReader(final Path path) {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the lines that start within [from, to). {@code from} must be the start of a line,
+     * heading line is skipped only when reading from the beginning of the file.
+     */
+    public MappedTransactionReader(final Path path, long from, long to) {
+        this(path, from, to, RejectLog.shared());
+    }
+
+    MappedTransactionReader(final Path path, long from, long to, final RejectSink rejects) {
+        this.filePath = path.toString();
+        this.rejects = rejects;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileSize = channel.size();
+            endOffset = Math.min(to, fileSize);
+            remap(Math.min(from, fileSize));
+            if (from == 0) nextLine(); // For skipping heading line
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+        }
+    }
+
+    @Override
+    public Transaction next() {
+        try {
+            int length;
+            while ((length = nextLine()) >= 0) {
+                Transaction transaction = parse(length);
+                if (transaction != null) {
+                    return transaction;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", filePath), e);
+        }
+    }
+
+    /**
+     * @return number of lines read so far, including the heading line
+     */
+    long getLineCount() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", filePath), e);
+        }
+    }
+
+    // Copies the next line into the line buffer and returns its length, or -1 at the end of the range
+    private int nextLine() throws IOException {
+        int start = position;
+        if (windowStart + start >= endOffset) return -1;
+
+        int end = start;
+        while (true) {
+            int limit = buffer.limit();
+            while (end < limit) {
+                byte b = buffer.get(end);
+                if (b == '\n' || b == '\r') break;
+                end++;
+            }
+            if (end < limit || windowStart + limit >= fileSize) break;
+            if (start == 0) throw new RuntimeException(String.format("Line is too long in file %s", filePath));
+            end -= start;
+            remap(windowStart + start);
+            start = 0;
+        }
+
+        int length = end - start;
+        if (line.length < length) line = new byte[Math.max(length, line.length * 2)];
+        buffer.get(start, line, 0, length);
+        lineNumber++;
+        position = end;
+        if (position < buffer.limit() && buffer.get(position++) == '\r') {
+            if (position == buffer.limit() && windowStart + position < fileSize) remap(windowStart + position);
+            if (position < buffer.limit() && buffer.get(position) == '\n') position++;
+        }
+        return length;
+    }
+
+    private void remap(long offset) throws IOException {
+        windowStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+        position = 0;
+    }
+
+    private Transaction parse(int length) {
+        int commaCount = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = line[i];
+            if (b < 0) {
+                ascii = false;
+            } else if (b == ',') {
+                if (commaCount < FIELDS) commas[commaCount] = i;
+                commaCount++;
+            }
+        }
+        if (!ascii || commaCount < FIELDS - 1) return parseSlow(length, ascii);
+
+        int accountFrom = commas[4] + 1;
+        int accountTo = commaCount >= FIELDS ? commas[5] : length;
+        long cents = Money.parseCents(line, commas[2] + 1, commas[3]);
+        if (accountTo == accountFrom || cents == Long.MIN_VALUE) return parseSlow(length, true);
+
+        String method;
+        if (equals(CARD, commas[3] + 1, commas[4])) {
+            if (accountTo - accountFrom < 10) return parseSlow(length, true);
+            for (int i = accountFrom; i < accountFrom + 10; i++) {
+                if (line[i] < '0' || line[i] > '9') return parseSlow(length, true);
+            }
+            method = Transaction.PAYMENT_METHOD_CARD;
+        } else if (equals(TRANSFER, commas[3] + 1, commas[4])) {
+            method = Transaction.PAYMENT_METHOD_TRANSFER;
+        } else {
+            return parseSlow(length, true);
+        }
+
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(ascii(0, commas[0]));
+        transaction.setUserId(ascii(commas[0] + 1, commas[1]));
+        if (equals(DEPOSIT, commas[1] + 1, commas[2])) {
+            transaction.setType(Transaction.TRANSACTION_TYPE_DEPOSIT);
+        } else if (equals(WITHDRAW, commas[1] + 1, commas[2])) {
+            transaction.setType(Transaction.TRANSACTION_TYPE_WITHDRAW);
+        } else {
+            transaction.setType(ascii(commas[1] + 1, commas[2]));
+        }
+        transaction.setAmount(Money.ofCents(cents));
+        transaction.setMethod(method);
+        transaction.setAccountNumber(ascii(accountFrom, accountTo));
+        return transaction;
+    }
+
+    private Transaction parseSlow(int length, boolean ascii) {
+        String text = new String(line, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        return Reader.processTransaction(text, filePath, lineNumber, rejects);
+    }
+
+    private String ascii(int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private boolean equals(byte[] expected, int from, int to) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (line[from + i] != expected[i]) return false;
+        }
+        return true;
+    }
+}
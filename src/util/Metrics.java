@@ -0,0 +1,300 @@
+package util;
+
+import dto.DeclineReason;
+import dto.Event;
+import dto.Transaction;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Collects timings and counters of one run and writes them as JSON.
+ * Phases are timed as a whole and also recorded as JFR events while a recording is running.
+ * Reading transactions and writing events are interleaved with processing, so their time is measured
+ * on every {@value #SAMPLE_INTERVAL}th call only and scaled up. Validators and BIN lookups are sampled the same way.
+ */
+public class Metrics {
+    public static final int SAMPLE_INTERVAL = 16;
+    private static final DeclineReason[] REASONS = DeclineReason.values();
+
+    private final long startNanos = System.nanoTime();
+    private final long startAllocatedBytes = allocatedBytes();
+    private final HeapPeak heapPeak = new HeapPeak();
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private SampledSource source;
+    private CountingSink sink;
+    private String[] validators = new String[0];
+    private long[] validatorInvocations = new long[0];
+    private long[] validatorDeclines = new long[0];
+    private long[] validatorNanos = new long[0];
+    private long binLookupNanos;
+    private long transactionCount;
+    private long eventCount;
+    // Null unless the stages ran on their own threads
+    private long[] stallNanos;
+
+    /**
+     * Runs a phase and adds its time to the phase of that name.
+     */
+    public <T> T time(String name, Supplier<T> phase) {
+        long start = System.nanoTime();
+        // Loading the event class is expensive, so it is only done once a recording has been started
+        PhaseEvent event = FlightRecorder.isInitialized() ? new PhaseEvent() : null;
+        if (event != null) event.begin();
+        try {
+            return phase.get();
+        } finally {
+            phaseNanos.merge(name, System.nanoTime() - start, Long::sum);
+            if (event != null) {
+                event.phase = name;
+                event.commit();
+            }
+        }
+    }
+
+    public void time(String name, Runnable phase) {
+        time(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    public TransactionSource measure(TransactionSource transactions) {
+        source = new SampledSource(transactions);
+        return source;
+    }
+
+    public EventSink measure(EventSink events) {
+        sink = new CountingSink(events);
+        return sink;
+    }
+
+    public void setCounts(long transactionCount, long eventCount) {
+        this.transactionCount = transactionCount;
+        this.eventCount = eventCount;
+    }
+
+    /**
+     * Sets how long the read, process and write stages of a pipeline were stalled waiting for each other.
+     */
+    public void setStallTimes(long readNanos, long processNanos, long writeNanos) {
+        this.stallNanos = new long[]{readNanos, processNanos, writeNanos};
+    }
+
+    /**
+     * @param invocations how often each validator was reached in the validation chain
+     * @param declines    how often each validator declined a transaction, with or without an event
+     * @param nanos       estimated time spent in each validator, including its part of the pre-validation
+     */
+    public void setValidatorCounts(String[] validators, long[] invocations, long[] declines, long[] nanos) {
+        this.validators = validators;
+        this.validatorInvocations = invocations;
+        this.validatorDeclines = declines;
+        this.validatorNanos = nanos;
+    }
+
+    /**
+     * Sets the estimated time of looking up cards in the BIN table, it is also part of the time of the card validators.
+     */
+    public void setBinLookupTime(long nanos) {
+        this.binLookupNanos = nanos;
+    }
+
+    /**
+     * Writes the metrics and stops tracking the peak heap.
+     */
+    public void write(final Path path) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Long processingNanos = phaseNanos.get("processTransactions");
+        StringBuilder json = new StringBuilder(2048).append("{\n");
+        field(json, 1, "transactions", transactionCount);
+        field(json, 1, "events", eventCount);
+        field(json, 1, "declinedWithoutEvent", transactionCount - eventCount);
+        field(json, 1, "elapsedMillis", elapsedNanos / 1_000_000);
+        field(json, 1, "rowsPerSecond", processingNanos == null || processingNanos == 0 ? 0 : transactionCount * 1_000_000_000L / processingNanos);
+
+        open(json, 1, "phasesMillis");
+        phaseNanos.forEach((name, nanos) -> field(json, 2, name, nanos / 1_000_000));
+        close(json, 1);
+        open(json, 1, "sampledMillis");
+        field(json, 2, "readTransactions", source == null ? 0 : source.estimatedNanos() / 1_000_000);
+        field(json, 2, "writeEvents", sink == null ? 0 : sink.estimatedNanos() / 1_000_000);
+        field(json, 2, "binLookups", binLookupNanos / 1_000_000);
+        close(json, 1);
+        if (stallNanos != null) {
+            open(json, 1, "stallMillis");
+            field(json, 2, "read", stallNanos[0] / 1_000_000);
+            field(json, 2, "process", stallNanos[1] / 1_000_000);
+            field(json, 2, "write", stallNanos[2] / 1_000_000);
+            close(json, 1);
+        }
+
+        open(json, 1, "validators");
+        for (int i = 0; i < validators.length; i++) {
+            open(json, 2, validators[i]);
+            field(json, 3, "invocations", validatorInvocations[i]);
+            field(json, 3, "declines", validatorDeclines[i]);
+            field(json, 3, "sampledMillis", validatorNanos[i] / 1_000_000);
+            close(json, 2);
+        }
+        close(json, 1);
+
+        open(json, 1, "outcomes");
+        field(json, 2, "APPROVED", sink == null ? 0 : sink.approved);
+        for (DeclineReason reason : REASONS) {
+            field(json, 2, reason.name(), sink == null ? 0 : sink.declined[reason.ordinal()]);
+        }
+        if (sink != null && sink.other > 0) field(json, 2, "OTHER", sink.other);
+        close(json, 1);
+
+        open(json, 1, "memory");
+        long allocatedBytes = allocatedBytes();
+        field(json, 2, "allocatedBytes", allocatedBytes < 0 || startAllocatedBytes < 0 ? -1 : allocatedBytes - startAllocatedBytes);
+        field(json, 2, "peakHeapBytes", heapPeak.bytes());
+        heapPeak.close();
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        field(json, 2, "gcCount", gcCount);
+        field(json, 2, "gcMillis", gcMillis);
+        close(json, 1);
+        // Drop the comma after the last field
+        json.setLength(json.length() - 2);
+        json.append("\n}\n");
+
+        try {
+            Files.writeString(path, json);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", path), e);
+        }
+    }
+
+    private static void open(StringBuilder json, int depth, String name) {
+        json.append("  ".repeat(depth)).append('"').append(name).append("\": {\n");
+    }
+
+    private static void close(StringBuilder json, int depth) {
+        if (json.charAt(json.length() - 2) == ',') json.setLength(json.length() - 2);
+        else json.setLength(json.length() - 1);
+        json.append('\n').append("  ".repeat(depth)).append("},\n");
+    }
+
+    private static void field(StringBuilder json, int depth, String name, long value) {
+        json.append("  ".repeat(depth)).append('"').append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot.getTotalThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static class SampledSource implements TransactionSource {
+        private final TransactionSource source;
+        private long calls;
+        private long sampledNanos;
+
+        private SampledSource(TransactionSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public Transaction next() {
+            if (calls++ % SAMPLE_INTERVAL != 0) return source.next();
+            long start = System.nanoTime();
+            Transaction transaction = source.next();
+            sampledNanos += System.nanoTime() - start;
+            return transaction;
+        }
+
+        @Override
+        public void close() {
+            source.close();
+        }
+
+        private long estimatedNanos() {
+            return sampledNanos * SAMPLE_INTERVAL;
+        }
+    }
+
+    private static class CountingSink implements EventSink {
+        private final EventSink sink;
+        private final long[] declined = new long[REASONS.length];
+        private long approved;
+        private long other;
+        private long calls;
+        private long sampledNanos;
+
+        private CountingSink(EventSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(Event event) {
+            if (event.reason != null) {
+                declined[event.reason.ordinal()]++;
+            } else if (event.status.equals(Event.STATUS_APPROVED)) {
+                approved++;
+            } else {
+                other++;
+            }
+            if (calls++ % SAMPLE_INTERVAL != 0) {
+                sink.accept(event);
+                return;
+            }
+            long start = System.nanoTime();
+            sink.accept(event);
+            sampledNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void approved(String transactionId) {
+            approved++;
+            if (calls++ % SAMPLE_INTERVAL != 0) {
+                sink.approved(transactionId);
+                return;
+            }
+            long start = System.nanoTime();
+            sink.approved(transactionId);
+            sampledNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void declined(String transactionId, DeclineReason reason, Object... args) {
+            declined[reason.ordinal()]++;
+            if (calls++ % SAMPLE_INTERVAL != 0) {
+                sink.declined(transactionId, reason, args);
+                return;
+            }
+            long start = System.nanoTime();
+            sink.declined(transactionId, reason, args);
+            sampledNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() {
+            long start = System.nanoTime();
+            sink.close();
+            // Final flush is not sampled
+            sampledNanos += (System.nanoTime() - start) / SAMPLE_INTERVAL;
+        }
+
+        private long estimatedNanos() {
+            return sampledNanos * SAMPLE_INTERVAL;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package util;
+
+import dto.Transaction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits the transactions file into chunks at line boundaries and parses them concurrently.
+ * Chunks are handed out strictly in file order, only a limited number of parsed chunks is kept in memory.
+ */
+public class ParallelTransactionReader implements TransactionSource {
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private final Path path;
+    private final ForkJoinPool pool;
+    private final long[] chunkStarts;
+    private final int maxChunksInFlight;
+    private final RejectSink rejects;
+    private final ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+    private int nextChunk;
+    // Lines of the chunks handed out so far
+    private long lineCount;
+    private Iterator<Transaction> current = Collections.emptyIterator();
+
+    public ParallelTransactionReader(final Path path, int threads, long chunkSize) {
+        this(path, 0, Long.MAX_VALUE, threads, chunkSize);
+    }
+
+    /**
+     * Reads only the lines that start within [from, to), see {@link MappedTransactionReader#MappedTransactionReader(Path, long, long)}.
+     */
+    public ParallelTransactionReader(final Path path, long from, long to, int threads, long chunkSize) {
+        this(path, from, to, threads, chunkSize, RejectLog.shared());
+    }
+
+    ParallelTransactionReader(final Path path, long from, long to, int threads, long chunkSize, final RejectSink rejects) {
+        this.path = path;
+        this.rejects = rejects;
+        this.chunkStarts = splitAtLines(path, from, to, chunkSize);
+        this.pool = new ForkJoinPool(threads);
+        this.maxChunksInFlight = threads * 2;
+        while (pending.size() < maxChunksInFlight && submitNext()) {
+            // Fill the pipeline
+        }
+    }
+
+    @Override
+    public Transaction next() {
+        while (!current.hasNext()) {
+            ForkJoinTask<Chunk> task = pending.poll();
+            if (task == null) return null;
+            Chunk chunk = task.join();
+            // Rejects are passed on in file order, once the number of the first line of the chunk is known
+            chunk.rejects.drainTo(rejects, lineCount);
+            lineCount += chunk.lineCount;
+            current = chunk.transactions.iterator();
+            submitNext();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private boolean submitNext() {
+        if (nextChunk >= chunkStarts.length - 1) return false;
+        long from = chunkStarts[nextChunk];
+        long to = chunkStarts[nextChunk + 1];
+        nextChunk++;
+        pending.add(pool.submit(() -> readChunk(from, to)));
+        return true;
+    }
+
+    private Chunk readChunk(long from, long to) {
+        Chunk chunk = new Chunk();
+        try (MappedTransactionReader reader = new MappedTransactionReader(path, from, to, chunk.rejects)) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                chunk.transactions.add(transaction);
+            }
+            chunk.lineCount = reader.getLineCount();
+        }
+        return chunk;
+    }
+
+    private static final class Chunk {
+        private final List<Transaction> transactions = new ArrayList<>();
+        // Line numbers count from the first line of the chunk
+        private final RejectLog.Buffer rejects = RejectLog.buffer();
+        private long lineCount;
+    }
+
+    /**
+     * @return offsets of the first line of every chunk followed by the end offset
+     */
+    static long[] splitAtLines(final Path path, long from, long to, long chunkSize) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), to);
+            List<Long> starts = new ArrayList<>();
+            starts.add(Math.min(from, size));
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long position = from + chunkSize;
+            while (position < size) {
+                long lineStart = nextLineStart(channel, buffer, position);
+                if (lineStart >= size) break;
+                starts.add(lineStart);
+                position = lineStart + chunkSize;
+            }
+            starts.add(size);
+            return starts.stream().mapToLong(Long::longValue).toArray();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+        }
+    }
+
+    // Line breaks are the same as in BufferedReader.readLine: \n, \r or \r\n
+    private static long nextLineStart(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        boolean afterCarriageReturn = false;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) return position;
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (afterCarriageReturn) return b == '\n' ? position + i + 1 : position + i;
+                if (b == '\n') return position + i + 1;
+                if (b == '\r') afterCarriageReturn = true;
+            }
+            position += read;
+        }
+    }
+}
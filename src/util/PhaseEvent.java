@@ -0,0 +1,19 @@
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning one phase of a run, recorded only while a flight recording is active.
+ */
+@Name("teldrassil.Phase")
+@Label("Processing Phase")
+@Category("Teldrassil")
+@Description("One phase of processing: reading reference data, processing transactions or writing balances")
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,86 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another stream on its own thread ahead of the consumer, e.g. to decompress a file while the consumer
+ * parses what was decompressed before. At most {@code chunkCount} chunks are read ahead.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread thread;
+    private volatile IOException error;
+    private byte[] chunk = new byte[0];
+    private int position;
+
+    public ReadAheadInputStream(final InputStream in, final String name, int chunkSize, int chunkCount) {
+        this.chunks = new ArrayBlockingQueue<>(chunkCount);
+        this.thread = new Thread(() -> readAhead(in, chunkSize), name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readAhead(InputStream in, int chunkSize) {
+        try (in) {
+            int length;
+            do {
+                byte[] buffer = new byte[chunkSize];
+                length = in.readNBytes(buffer, 0, chunkSize);
+                if (length > 0) chunks.put(length == chunkSize ? buffer : Arrays.copyOf(buffer, length));
+            } while (length == chunkSize);
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            // Closed by the consumer
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            // Closed by the consumer
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!hasRemaining()) return -1;
+        return chunk[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!hasRemaining()) return -1;
+        int count = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    private boolean hasRemaining() throws IOException {
+        if (position < chunk.length) return true;
+        if (chunk != END) {
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + thread.getName(), e);
+            }
+            position = 0;
+        }
+        if (chunk == END && error != null) throw error;
+        return chunk != END;
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+        chunks.clear();
+    }
+}
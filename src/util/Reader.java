@@ -1,26 +1,37 @@
 package util;
 
 import dto.BinMapping;
+import dto.Money;
 import dto.Transaction;
 import dto.User;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class Reader {
+    private static final int READER_THREADS = Integer.getInteger("teldrassil.reader.threads", Runtime.getRuntime().availableProcessors());
+    private static final long READER_CHUNK_SIZE = Long.getLong("teldrassil.reader.chunkSize", 8L << 20);
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final int DECOMPRESSED_CHUNK_SIZE = 1 << 16;
+    private static final int DECOMPRESSED_CHUNKS_AHEAD = 64;
+
     public static List<User> readUsers(final Path path) {
         ArrayList<User> users = new ArrayList<>();
-        try (FileReader reader = new FileReader(path.toFile());
-             BufferedReader br = new BufferedReader(reader)) {
+        try (BufferedReader br = openLines(path)) {
             br.readLine(); // For skipping heading line
             String line;
+            long lineNumber = 1;
             while ((line = br.readLine()) != null) {
-                User user = processUser(line, path.toString());
+                User user = processUser(line, path.toString(), ++lineNumber);
                 if (user != null){
                     users.add(user);
                 }
@@ -31,28 +42,27 @@ public class Reader {
         return users;
     }
 
-    private static User processUser(String line, String filePath){
+    private static User processUser(String line, String filePath, long lineNumber){
         String[] values = line.split(",");
         User user = new User();
         try{
             user.setUserId(values[0]);
             user.setUsername(values[1]);
-            user.setBalance(new BigDecimal(values[2]));
+            user.setBalance(Money.parse(values[2]));
             user.setCountry(values[3]);
             user.setFrozen(values[4]);
-            user.setDepositMin(new BigDecimal(values[5]));
-            user.setDepositMax(new BigDecimal(values[6]));
-            user.setWithdrawMin(new BigDecimal(values[7]));
-            user.setWithdrawMax(new BigDecimal(values[8]));
+            user.setDepositMin(Money.parse(values[5]));
+            user.setDepositMax(Money.parse(values[6]));
+            user.setWithdrawMin(Money.parse(values[7]));
+            user.setWithdrawMax(Money.parse(values[8]));
         } catch (IndexOutOfBoundsException e) {
-            System.out.printf(
-                    "Skipped line: Wrong number of parameters in line %s in %s. Expected: %d, Given: %d%n",line, filePath, 9, values.length);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.WRONG_FIELD_COUNT, line);
             return null;
         }catch (NumberFormatException e){
-            System.out.printf("Skipped line: Can not covert value to BigDecimal in line %s in %s.",line, filePath);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.NOT_A_NUMBER, line);
             return null;
         } catch (Exception e){
-            System.out.printf("Found and skipped corrupted line (%s) in file (%s)%n", line, filePath);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.CORRUPTED, line);
             return null;
         }
         return user;
@@ -60,50 +70,109 @@ public class Reader {
 
     public static List<Transaction> readTransactions(final Path path){
         ArrayList<Transaction> transactions = new ArrayList<>();
-        try (FileReader reader = new FileReader(path.toFile());
-             BufferedReader br = new BufferedReader(reader)) {
-            br.readLine(); // For skipping heading line
-            String line;
-            while ((line = br.readLine()) != null) {
-                Transaction transaction = processTransaction(line, path.toString());
-                if (transaction != null) {
-                    transactions.add(transaction);
-                }
+        try (TransactionSource source = openTransactions(path)) {
+            Transaction transaction;
+            while ((transaction = source.next()) != null) {
+                transactions.add(transaction);
             }
+        }
+        return transactions;
+    }
+
+    public static TransactionSource openTransactions(final Path path){
+        return openTransactions(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the lines that start within [from, to), {@code from} must be the start of a line.
+     * Only the beginning of the file can be read from anything else than a regular uncompressed file.
+     */
+    public static TransactionSource openTransactions(final Path path, long from, long to){
+        if (ColumnarTransactions.isColumnar(path)) {
+            if (from != 0) throw new RuntimeException(String.format("Can not continue reading file %s from offset %d", path, from));
+            return ColumnarTransactions.open(path);
+        }
+        if (Files.isRegularFile(path) && !isCompressed(path)) {
+            if (READER_THREADS > 1) {
+                return new ParallelTransactionReader(path, from, to, READER_THREADS, READER_CHUNK_SIZE);
+            }
+            return new MappedTransactionReader(path, from, to);
+        }
+        if (from != 0) throw new RuntimeException(String.format("Can not continue reading file %s from offset %d", path, from));
+        try {
+            BufferedReader br = openLines(path);
+            br.readLine(); // For skipping heading line
+            return new LineTransactionSource(br, path.toString());
         } catch (IOException e){
             throw new RuntimeException(String.format("Can not find or read file %s", path), e);
         }
-        return transactions;
     }
 
-    private static Transaction processTransaction(String line, String filePath) {
+    /**
+     * @return true if the lines that were appended to the file since it was processed can be read on their own,
+     * which is not the case for compressed and columnar files
+     */
+    public static boolean isAppendable(final Path path) {
+        return !isCompressed(path) && !ColumnarTransactions.isColumnar(path);
+    }
+
+    /**
+     * @return true if the file is gzip-compressed, which is told by its name
+     */
+    public static boolean isCompressed(final Path path) {
+        return path.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    // Compressed files are decompressed on another thread, so that parsing and decompression overlap
+    static BufferedReader openLines(Path path) throws IOException {
+        if (!isCompressed(path)) return new BufferedReader(new FileReader(path.toFile()));
+        InputStream decompressed = new ReadAheadInputStream(new GZIPInputStream(Files.newInputStream(path), DECOMPRESSED_CHUNK_SIZE),
+                "decompress " + path.getFileName(), DECOMPRESSED_CHUNK_SIZE, DECOMPRESSED_CHUNKS_AHEAD);
+        return new BufferedReader(new InputStreamReader(decompressed, Charset.defaultCharset()), DECOMPRESSED_CHUNK_SIZE);
+    }
+
+    /**
+     * Reads transactions in the format of the transactions file from a stream, e.g. a request body.
+     *
+     * @param name shown instead of the file path in messages about skipped lines
+     */
+    public static TransactionSource openTransactions(final InputStream in, final String name){
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
+            br.readLine(); // For skipping heading line
+            return new LineTransactionSource(br, name);
+        } catch (IOException e){
+            throw new RuntimeException(String.format("Can not find or read file %s", name), e);
+        }
+    }
+
+    static Transaction processTransaction(String line, String filePath, long lineNumber, RejectSink rejects) {
         String[] values = line.split(",");
         Transaction transaction = new Transaction();
         try {
             transaction.setTransactionId(values[0]);
             transaction.setUserId(values[1]);
             transaction.setType(values[2]);
-            transaction.setAmount(new BigDecimal(values[3]));
+            transaction.setAmount(Money.parse(values[3]));
             if(values[4].equals(Transaction.PAYMENT_METHOD_CARD) ||
                     values[4].equals(Transaction.PAYMENT_METHOD_TRANSFER)){
                 transaction.setMethod(values[4]);
             } else {
-                System.out.printf("Skipped line: Payment method can be only CARD or TRANSFER in line %s in %s. Given: %s%n", line, filePath, values[4]);
+                rejects.reject(filePath, lineNumber, RejectLog.Reason.WRONG_PAYMENT_METHOD, line);
                 return null;
             }
             if (values[4].equals(Transaction.PAYMENT_METHOD_CARD)){
                 Long.parseLong(values[5].substring(0,10));
             }
             transaction.setAccountNumber(values[5]);
-            transaction.setAmount(new BigDecimal(values[3]));
         } catch (IndexOutOfBoundsException e) {
-            System.out.printf("Skipped line: Wrong number of parameters in line %s in %s. Expected: %d, Given: %d%n",line, filePath, 6, values.length);
+            rejects.reject(filePath, lineNumber, RejectLog.Reason.WRONG_FIELD_COUNT, line);
             return null;
         }catch (NumberFormatException e){
-            System.out.printf("Skipped line: Can not convert value to Long or BigDecimal in line %s in %s.",line, filePath);
+            rejects.reject(filePath, lineNumber, RejectLog.Reason.NOT_A_NUMBER, line);
             return null;
         } catch (Exception e){
-            System.out.printf("Found and skipped corrupted line (%s) in file (%s)%n", line, filePath);
+            rejects.reject(filePath, lineNumber, RejectLog.Reason.CORRUPTED, line);
             return null;
         }
         return transaction;
@@ -111,12 +180,12 @@ public class Reader {
 
     public static List<BinMapping> readBinMappings(final Path path){
         ArrayList<BinMapping> binMappings = new ArrayList<>();
-        try (FileReader reader = new FileReader(path.toFile());
-             BufferedReader br = new BufferedReader(reader)) {
+        try (BufferedReader br = openLines(path)) {
             br.readLine(); // For skipping heading line
             String line;
+            long lineNumber = 1;
             while ((line = br.readLine()) != null) {
-                BinMapping binMapping = processBinMapping(line, path.toString());
+                BinMapping binMapping = processBinMapping(line, path.toString(), ++lineNumber);
                 if (binMapping != null) {
                     binMappings.add(binMapping);
                 }
@@ -127,7 +196,7 @@ public class Reader {
         return binMappings;
     }
 
-    private static BinMapping processBinMapping(String line, String filePath) {
+    private static BinMapping processBinMapping(String line, String filePath, long lineNumber) {
         String[] values = line.split(",");
         BinMapping binMapping = new BinMapping();
         try {
@@ -136,26 +205,63 @@ public class Reader {
             binMapping.setRangeTo(Long.parseLong(values[2]));
             if(values[3].equals(BinMapping.DEBIT_CARD) ||
                     values[3].equals(BinMapping.CREDIT_CARD)){
-                System.out.printf("Skipped line: BinMapping type can be CC or DC in line %s in %s. Given: %s%n",line, filePath, values[3]);
                 binMapping.setType(values[3]);
             } else {
+                RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.WRONG_CARD_TYPE, line);
                 return null;
             }
             if (values[4].length() != 3) {
-                System.out.printf("Skipped line: Country must be represented in 3-letters C in line %s in %s. Given: %s%n",line, filePath, values[4]);
+                RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.WRONG_COUNTRY, line);
                 return null;
             }
             binMapping.setCountry(values[4]);
         } catch (IndexOutOfBoundsException e) {
-            System.out.printf("Skipped line: Wrong number of parameters in line %s in %s. Expected: %d, Given: %d%n",line, filePath, 5, values.length);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.WRONG_FIELD_COUNT, line);
             return null;
         }catch (NumberFormatException e){
-            System.out.printf(" Skipped line: Can not convert value to Long in line %s in %s.",line, filePath);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.NOT_A_NUMBER, line);
             return null;
         } catch (Exception e){
-            System.out.printf("Found and skipped corrupted line (%s) in file (%s)%n", line, filePath);
+            RejectLog.shared().reject(filePath, lineNumber, RejectLog.Reason.CORRUPTED, line);
             return null;
         }
         return binMapping;
     }
+
+    private static class LineTransactionSource implements TransactionSource {
+        private final BufferedReader br;
+        private final String path;
+        // The heading line is line 1
+        private long lineNumber = 1;
+
+        private LineTransactionSource(BufferedReader br, String path) {
+            this.br = br;
+            this.path = path;
+        }
+
+        @Override
+        public Transaction next() {
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    Transaction transaction = processTransaction(line, path, ++lineNumber, RejectLog.shared());
+                    if (transaction != null) {
+                        return transaction;
+                    }
+                }
+                return null;
+            } catch (IOException e){
+                throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                br.close();
+            } catch (IOException e){
+                throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+            }
+        }
+    }
 }
@@ -0,0 +1,244 @@
+package util;
+
+import dto.BinMapping;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.TreeMap;
+
+/**
+ * BIN table and ISO country codes compiled into a binary file that is memory-mapped, so a run can look up cards
+ * without parsing the BIN mappings file again. The compiled file remembers size and modification time of the file
+ * it was compiled from and {@link #open} compiles it again as soon as these change.
+ * <p>
+ * Layout, big-endian: header, segment starts, segment ends, mapping index of every segment, offsets of the encoded
+ * mappings, encoded mappings and finally the country codes.
+ */
+public class ReferenceData {
+    private static final int MAGIC = 0x544C5244;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int COUNTRY_SIZE = 5;
+
+    private final BinIndex binIndex;
+    private final Map<String, String> iso3Codes;
+
+    private ReferenceData(BinIndex binIndex, Map<String, String> iso3Codes) {
+        this.binIndex = binIndex;
+        this.iso3Codes = iso3Codes;
+    }
+
+    /**
+     * Compiles a BIN mappings file: {@code ReferenceData <bin mappings file> <compiled file>}
+     */
+    public static void main(final String[] args) {
+        if (args.length != 2) throw new RuntimeException("Wrong number of file paths provided. Expected: 2. Actual: " + args.length);
+        compile(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    public BinIndex getBinIndex() {
+        return binIndex;
+    }
+
+    /**
+     * @return ISO3 code of every ISO country that has one, by its upper-case two-letter code
+     */
+    public Map<String, String> getIso3Codes() {
+        return iso3Codes;
+    }
+
+    /**
+     * Maps the compiled file, compiling it first if it is missing or was compiled from an older BIN mappings file.
+     */
+    public static ReferenceData open(final Path binMappingsFile, final Path compiledFile) {
+        long[] source = sourceVersion(binMappingsFile);
+        ReferenceData referenceData = map(compiledFile, source);
+        if (referenceData == null) {
+            compile(binMappingsFile, compiledFile);
+            referenceData = map(compiledFile, sourceVersion(binMappingsFile));
+            if (referenceData == null) throw new RuntimeException(String.format("Can not find or read file %s", compiledFile));
+        }
+        return referenceData;
+    }
+
+    /**
+     * Writes to a temporary file first, so runs that map the existing file are not affected.
+     */
+    public static void compile(final Path binMappingsFile, final Path compiledFile) {
+        // Taken before reading, a change while reading makes the next run compile again
+        long[] source = sourceVersion(binMappingsFile);
+        List<BinMapping> binMappings = Reader.readBinMappings(binMappingsFile);
+        List<long[]> segments = BinIndex.flatten(binMappings);
+        Map<String, String> iso3Codes = localeIso3Codes();
+
+        Path temporary = null;
+        try {
+            // Unique, so runs that compile the same file at the same time do not write into each other's file
+            temporary = Files.createTempFile(compiledFile.toAbsolutePath().getParent(), compiledFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(source[0]);
+                out.writeLong(source[1]);
+                out.writeInt(segments.size());
+                out.writeInt(binMappings.size());
+                out.writeInt(iso3Codes.size());
+                out.writeInt(0);
+                for (int field = 0; field < 3; field++) {
+                    for (long[] segment : segments) {
+                        if (field == 2) {
+                            out.writeInt((int) segment[2]);
+                        } else {
+                            out.writeLong(segment[field]);
+                        }
+                    }
+                }
+                byte[][] encoded = new byte[binMappings.size()][];
+                int offset = 0;
+                for (int i = 0; i < encoded.length; i++) {
+                    encoded[i] = encode(binMappings.get(i));
+                    out.writeInt(offset);
+                    offset += encoded[i].length;
+                }
+                out.writeInt(offset);
+                for (byte[] mapping : encoded) {
+                    out.write(mapping);
+                }
+                for (Map.Entry<String, String> code : iso3Codes.entrySet()) {
+                    out.write(code.getKey().getBytes(StandardCharsets.US_ASCII));
+                    out.write(code.getValue().getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            Files.move(temporary, compiledFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", compiledFile), e);
+        } finally {
+            try {
+                // Already moved if compiling succeeded
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                // Only a temporary file is left behind
+            }
+        }
+    }
+
+    /**
+     * @return null if the file does not exist, is not complete or was compiled from another version of the source
+     */
+    private static ReferenceData map(Path compiledFile, long[] source) {
+        if (!Files.isRegularFile(compiledFile)) return null;
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(compiledFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", compiledFile), e);
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != source[0] || buffer.getLong(16) != source[1]) {
+            return null;
+        }
+        int segmentCount = buffer.getInt(24);
+        int mappingCount = buffer.getInt(28);
+        int countryCount = buffer.getInt(32);
+        long rangeFrom = HEADER_SIZE;
+        long rangeTo = rangeFrom + 8L * segmentCount;
+        long segmentMappings = rangeTo + 8L * segmentCount;
+        long mappingOffsets = segmentMappings + 4L * segmentCount;
+        long mappings = mappingOffsets + 4L * (mappingCount + 1);
+        if (segmentCount < 0 || mappingCount < 0 || countryCount < 0 || mappings > buffer.limit()) return null;
+        long countries = mappings + buffer.getInt((int) mappingOffsets + 4 * mappingCount);
+        if (countries + (long) COUNTRY_SIZE * countryCount != buffer.limit()) return null;
+
+        BinIndex binIndex = new MappedBinIndex(
+                buffer.slice((int) rangeFrom, 8 * segmentCount).asLongBuffer(),
+                buffer.slice((int) rangeTo, 8 * segmentCount).asLongBuffer(),
+                buffer.slice((int) segmentMappings, 4 * segmentCount).asIntBuffer(),
+                mappingCount,
+                index -> decode(buffer, (int) mappings + buffer.getInt((int) mappingOffsets + 4 * index)));
+        Map<String, String> iso3Codes = new HashMap<>();
+        for (int i = 0; i < countryCount; i++) {
+            int position = (int) countries + COUNTRY_SIZE * i;
+            iso3Codes.put(ascii(buffer, position, 2), ascii(buffer, position + 2, 3));
+        }
+        return new ReferenceData(binIndex, iso3Codes);
+    }
+
+    // Range of the mapping followed by name, type and country, each prefixed with its length
+    private static byte[] encode(BinMapping binMapping) throws IOException {
+        byte[][] values = new byte[3][];
+        int size = 16;
+        String[] strings = {binMapping.getName(), binMapping.getType(), binMapping.getCountry()};
+        for (int i = 0; i < values.length; i++) {
+            values[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            if (values[i].length > Short.MAX_VALUE) throw new IOException("BIN mapping value is too long: " + strings[i]);
+            size += 2 + values[i].length;
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(size).putLong(binMapping.getRangeFrom()).putLong(binMapping.getRangeTo());
+        for (byte[] value : values) {
+            encoded.putShort((short) value.length).put(value);
+        }
+        return encoded.array();
+    }
+
+    private static BinMapping decode(ByteBuffer buffer, int position) {
+        BinMapping binMapping = new BinMapping();
+        binMapping.setRangeFrom(buffer.getLong(position));
+        binMapping.setRangeTo(buffer.getLong(position + 8));
+        position += 16;
+        String[] values = new String[3];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[buffer.getShort(position)];
+            buffer.get(position + 2, bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 2 + bytes.length;
+        }
+        binMapping.setName(values[0]);
+        binMapping.setType(values[1]);
+        binMapping.setCountry(values[2]);
+        return binMapping;
+    }
+
+    private static String ascii(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // Countries without a three-letter code are left to Locale, which fails for them at lookup
+    private static Map<String, String> localeIso3Codes() {
+        Map<String, String> codes = new TreeMap<>();
+        for (String country : Locale.getISOCountries()) {
+            try {
+                String iso3 = Locale.of("", country).getISO3Country();
+                if (country.length() == 2 && iso3.length() == 3) codes.put(country, iso3);
+            } catch (MissingResourceException e) {
+                // Not cached
+            }
+        }
+        return codes;
+    }
+
+    private static long[] sourceVersion(Path binMappingsFile) {
+        try {
+            return new long[]{Files.size(binMappingsFile), Files.getLastModifiedTime(binMappingsFile).toMillis()};
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", binMappingsFile), e);
+        }
+    }
+}
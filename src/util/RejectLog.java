@@ -0,0 +1,234 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Lines of input files that are skipped because they can not be parsed. Readers only hand rejects over to a
+ * background thread that writes them to the rejects file {@code teldrassil.rejects}, if one is configured, and prints
+ * the first {@code teldrassil.rejects.sample} of them. Counts by file and reason are printed when the JVM exits.
+ * <p>
+ * Rejects file columns are file, line number, reason and the content of the line, which takes the rest of the line.
+ * Line numbers count from where reading started, the heading line of a file read from the beginning is line 1.
+ */
+public final class RejectLog implements RejectSink {
+    private static final String REJECTS_FILE = System.getProperty("teldrassil.rejects");
+    private static final int SAMPLE_SIZE = Integer.getInteger("teldrassil.rejects.sample", 10);
+    private static final int QUEUE_SIZE = 1 << 14;
+    private static final int WRITER_BUFFER_SIZE = 1 << 16;
+    private static final Reject END = new Reject(null, 0, null, null);
+    private static final RejectLog SHARED =
+            new RejectLog(REJECTS_FILE == null ? null : Paths.get(REJECTS_FILE), SAMPLE_SIZE, System.out);
+
+    public enum Reason {
+        WRONG_FIELD_COUNT("Wrong number of parameters"),
+        NOT_A_NUMBER("Can not convert value to a number"),
+        WRONG_PAYMENT_METHOD("Payment method can be only CARD or TRANSFER"),
+        WRONG_CARD_TYPE("BinMapping type can be CC or DC"),
+        WRONG_COUNTRY("Country must be represented in 3 letters"),
+        CORRUPTED("Corrupted line");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final class Reject {
+        private final String file;
+        private final long lineNumber;
+        private final Reason reason;
+        private final String line;
+
+        private Reject(String file, long lineNumber, Reason reason, String line) {
+            this.file = file;
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.line = line;
+        }
+    }
+
+    private final Path rejectsFile;
+    private final int sampleSize;
+    private final PrintStream out;
+    // Created with the background thread, producers only use both while holding the lock
+    private BlockingQueue<Reject> queue;
+    // Written only by the background thread, read after it has ended
+    private final Map<String, long[]> counts = new LinkedHashMap<>();
+    private Thread thread;
+    private boolean closed;
+    private IOException error;
+
+    /**
+     * @param rejectsFile file to write all rejects to, null for none
+     * @param sampleSize  number of rejects that are printed
+     */
+    RejectLog(Path rejectsFile, int sampleSize, PrintStream out) {
+        this.rejectsFile = rejectsFile;
+        this.sampleSize = sampleSize;
+        this.out = out;
+    }
+
+    /**
+     * @return log of all readers of the process
+     */
+    public static RejectLog shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return log that keeps rejects until they are passed on with {@link Buffer#drainTo}
+     */
+    public static Buffer buffer() {
+        return new Buffer();
+    }
+
+    /**
+     * Waits only while the background thread is behind by more than a few thousand rejects.
+     * Rejects that arrive after {@link #close()} are dropped.
+     */
+    @Override
+    public void reject(String file, long lineNumber, Reason reason, String line) {
+        Reject reject = new Reject(file, lineNumber, reason, line);
+        // The queue ends with the close, nothing may be put after it
+        synchronized (this) {
+            if (closed) return;
+            start();
+            try {
+                queue.put(reject);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        if (thread != null) return;
+        queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        thread = new Thread(this::run, "reject log");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * Writes the remaining rejects and prints the counts, later rejects are dropped.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        if (thread == null) return;
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (Map.Entry<String, long[]> file : counts.entrySet()) {
+            StringBuilder summary = new StringBuilder("Skipped lines in ").append(file.getKey()).append(':');
+            for (Reason reason : Reason.values()) {
+                long count = file.getValue()[reason.ordinal()];
+                if (count > 0) summary.append(' ').append(reason).append('=').append(count);
+            }
+            out.println(summary);
+        }
+        if (rejectsFile != null) out.printf("Skipped lines are written to %s%n", rejectsFile);
+        if (error != null) throw new RuntimeException(String.format("Can not write to file %s", rejectsFile), error);
+    }
+
+    private void run() {
+        BufferedWriter writer = null;
+        long rejectCount = 0;
+        try {
+            if (rejectsFile != null) {
+                writer = new BufferedWriter(Files.newBufferedWriter(rejectsFile), WRITER_BUFFER_SIZE);
+                writer.write("FILE,LINE,REASON,CONTENT\n");
+            }
+            Reject reject;
+            while (true) {
+                reject = queue.poll();
+                if (reject == null) {
+                    // Keeps the file up to date in long-running processes without flushing for every reject
+                    if (writer != null) writer.flush();
+                    reject = queue.take();
+                }
+                if (reject == END) break;
+                counts.computeIfAbsent(reject.file, file -> new long[Reason.values().length])[reject.reason.ordinal()]++;
+                if (rejectCount++ < sampleSize) {
+                    out.printf("Skipped line %d in %s: %s: %s%n",
+                            reject.lineNumber, reject.file, reject.reason.getDescription(), reject.line);
+                }
+                if (writer != null) {
+                    writer.write(reject.file);
+                    writer.write(',');
+                    writer.write(Long.toString(reject.lineNumber));
+                    writer.write(',');
+                    writer.write(reject.reason.name());
+                    writer.write(',');
+                    writer.write(reject.line);
+                    writer.write('\n');
+                }
+            }
+            if (writer != null) writer.close();
+        } catch (IOException e) {
+            error = e;
+            // Keeps counting, so producers are not blocked
+            drainAfterError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainAfterError() {
+        try {
+            Reject reject;
+            while ((reject = queue.take()) != END) {
+                counts.computeIfAbsent(reject.file, file -> new long[Reason.values().length])[reject.reason.ordinal()]++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps the rejects of a part of a file that is read before the number of its first line is known.
+     * Not thread-safe.
+     */
+    public static final class Buffer implements RejectSink {
+        private final List<Reject> rejects = new ArrayList<>();
+
+        private Buffer() {
+        }
+
+        @Override
+        public void reject(String file, long lineNumber, Reason reason, String line) {
+            rejects.add(new Reject(file, lineNumber, reason, line));
+        }
+
+        /**
+         * Passes the rejects on with their line numbers shifted by {@code lineOffset}.
+         */
+        public void drainTo(RejectSink sink, long lineOffset) {
+            for (Reject reject : rejects) {
+                sink.reject(reject.file, reject.lineNumber + lineOffset, reject.reason, reject.line);
+            }
+            rejects.clear();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package util;
+
+/**
+ * Receives the lines of input files that are skipped because they can not be parsed.
+ */
+public interface RejectSink {
+    void reject(String file, long lineNumber, RejectLog.Reason reason, String line);
+}
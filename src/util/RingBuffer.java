@@ -0,0 +1,142 @@
+package util;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring of preallocated slots that one producer thread fills and one consumer thread drains in order.
+ * Slots are reused, so the memory of a pipeline is bounded by the capacity of its rings. Both sides measure how
+ * long they were stalled waiting for the other one. Waiting is not interruptible, a pipeline is stopped with
+ * {@link #abort}.
+ */
+public class RingBuffer<T> {
+    private final Object[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private long published;
+    private long taken;
+    private long released;
+    private boolean closed;
+    private boolean aborted;
+    private long producerStallNanos;
+    private long consumerStallNanos;
+
+    public RingBuffer(int capacity, Supplier<T> slotFactory) {
+        slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = slotFactory.get();
+        }
+    }
+
+    /**
+     * Producer side, waits until the consumer has released a slot.
+     *
+     * @return slot to fill and {@link #publish}, null if the ring was aborted
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        lock.lock();
+        try {
+            if (published - released == slots.length) {
+                long start = System.nanoTime();
+                while (published - released == slots.length && !aborted) {
+                    notFull.awaitUninterruptibly();
+                }
+                producerStallNanos += System.nanoTime() - start;
+            }
+            return aborted ? null : (T) slots[(int) (published % slots.length)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void publish() {
+        lock.lock();
+        try {
+            published++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Producer side, no more slots are published.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Consumer side, waits until the producer has published a slot.
+     *
+     * @return slot to read and {@link #release}, null once the ring is closed and drained or was aborted
+     */
+    @SuppressWarnings("unchecked")
+    public T take() {
+        lock.lock();
+        try {
+            if (taken == published && !closed) {
+                long start = System.nanoTime();
+                while (taken == published && !closed && !aborted) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                consumerStallNanos += System.nanoTime() - start;
+            }
+            if (aborted || taken == published) return null;
+            return (T) slots[(int) (taken++ % slots.length)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            released++;
+            notFull.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops both sides, e.g. after the other side failed.
+     */
+    public void abort() {
+        lock.lock();
+        try {
+            aborted = true;
+            notFull.signal();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getProducerStallNanos() {
+        lock.lock();
+        try {
+            return producerStallNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getConsumerStallNanos() {
+        lock.lock();
+        try {
+            return consumerStallNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
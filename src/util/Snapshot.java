@@ -0,0 +1,242 @@
+package util;
+
+import dto.Money;
+import dto.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * End state of a run: balances, account owners, ids of transactions with an event and how far the transactions file
+ * was read. A later run that starts from the snapshot gives the same result as replaying all transactions again.
+ * The watermark allows to continue a transactions file that has grown since, any other file is read from the start.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x544C4453;
+    private static final int VERSION = 1;
+    // Bytes before the watermark that are compared to make sure the file was only appended to
+    private static final int CHECKED_TAIL_SIZE = 4096;
+
+    private final String[] userIds;
+    // User id and balance of every row of the users file
+    private final String[] balanceUserIds;
+    private final Money[] balances;
+    // Owners are indices into the user ids
+    private final AccountOwners accountOwners;
+    private final TransactionIdSet transactionIds;
+    private final String watermarkFile;
+    private final long watermarkOffset;
+    private final long watermarkChecksum;
+
+    /**
+     * @param processedTo end of the processed part of the transactions file, negative if it can not be continued
+     */
+    public Snapshot(final UserIndex users, final AccountOwners accountOwners, final TransactionIdSet transactionIds,
+                    final Path transactionsFile, long processedTo) {
+        this.userIds = new String[users.symbolCount()];
+        for (int symbol = 0; symbol < userIds.length; symbol++) {
+            userIds[symbol] = users.userIdOf(symbol);
+        }
+        List<User> rows = users.getUsers();
+        this.balanceUserIds = new String[rows.size()];
+        this.balances = new Money[rows.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balanceUserIds[i] = rows.get(i).getUserId();
+            balances[i] = rows.get(i).getBalance();
+        }
+        this.accountOwners = accountOwners;
+        this.transactionIds = transactionIds;
+        this.watermarkFile = processedTo < 0 ? "" : transactionsFile.toAbsolutePath().normalize().toString();
+        this.watermarkOffset = Math.max(processedTo, 0);
+        this.watermarkChecksum = processedTo < 0 ? 0 : tailChecksum(transactionsFile, processedTo);
+    }
+
+    private Snapshot(String[] userIds, String[] balanceUserIds, Money[] balances, AccountOwners accountOwners,
+                     TransactionIdSet transactionIds, String watermarkFile, long watermarkOffset, long watermarkChecksum) {
+        this.userIds = userIds;
+        this.balanceUserIds = balanceUserIds;
+        this.balances = balances;
+        this.accountOwners = accountOwners;
+        this.transactionIds = transactionIds;
+        this.watermarkFile = watermarkFile;
+        this.watermarkOffset = watermarkOffset;
+        this.watermarkChecksum = watermarkChecksum;
+    }
+
+    /**
+     * @return account owners as symbols of the index, owners that are not in it are added to it
+     */
+    public AccountOwners getAccountOwners(final UserIndex users) {
+        int[] symbols = new int[userIds.length];
+        boolean sameSymbols = true;
+        for (int i = 0; i < userIds.length; i++) {
+            symbols[i] = users.addUserId(userIds[i]);
+            sameSymbols &= symbols[i] == i;
+        }
+        if (sameSymbols) return accountOwners;
+        AccountOwners owners = new AccountOwners();
+        accountOwners.forEach((account, owner) -> owners.put(account, symbols[owner]));
+        return owners;
+    }
+
+    public TransactionIdSet getTransactionIds() {
+        return transactionIds;
+    }
+
+    /**
+     * Sets the balances of all users that are in the snapshot, other user data is taken as read from the users file.
+     * Users are matched by id, users with the same id by the order of their rows.
+     */
+    public void applyBalances(final List<User> users) {
+        Map<String, ArrayDeque<Money>> balancesById = new HashMap<>();
+        for (int i = 0; i < balances.length; i++) {
+            balancesById.computeIfAbsent(balanceUserIds[i], id -> new ArrayDeque<>()).add(balances[i]);
+        }
+        for (User user : users) {
+            ArrayDeque<Money> userBalances = balancesById.get(user.getUserId());
+            Money balance = userBalances == null ? null : userBalances.poll();
+            if (balance != null) user.setBalance(balance);
+        }
+    }
+
+    /**
+     * @return offset of the first line that is not processed yet if the file is the one in the watermark
+     * and was only appended to since, otherwise 0
+     */
+    public long resumeOffset(final Path transactionsFile) {
+        if (watermarkFile.isEmpty() || !watermarkFile.equals(transactionsFile.toAbsolutePath().normalize().toString())) return 0;
+        if (fileSize(transactionsFile) < watermarkOffset || tailChecksum(transactionsFile, watermarkOffset) != watermarkChecksum) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(transactionsFile, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(2);
+            long from = Math.max(watermarkOffset - 1, 0);
+            channel.read(bytes, from);
+            // The last processed line had no line break yet, the one written with the next line ends it
+            if (watermarkOffset > 0 && bytes.position() == 2 && bytes.get(0) != '\n' && bytes.get(1) == '\n') {
+                return watermarkOffset + 1;
+            }
+            return watermarkOffset;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", transactionsFile), e);
+        }
+    }
+
+    /**
+     * @return size of a regular file, -1 for anything else
+     */
+    public static long fileSize(final Path path) {
+        try {
+            return Files.isRegularFile(path) ? Files.size(path) : -1;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+        }
+    }
+
+    public static Snapshot load(final Path path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new RuntimeException(String.format("File %s is not a snapshot of a supported version", path));
+            }
+            String watermarkFile = in.readUTF();
+            long watermarkOffset = in.readLong();
+            long watermarkChecksum = in.readLong();
+
+            String[] userIds = new String[in.readInt()];
+            for (int i = 0; i < userIds.length; i++) {
+                userIds[i] = in.readUTF();
+            }
+            String[] balanceUserIds = new String[in.readInt()];
+            Money[] balances = new Money[balanceUserIds.length];
+            for (int i = 0; i < balances.length; i++) {
+                balanceUserIds[i] = in.readUTF();
+                balances[i] = readMoney(in);
+            }
+            AccountOwners accountOwners = AccountOwners.readFrom(in);
+            TransactionIdSet transactionIds = TransactionIdSet.readFrom(in);
+            return new Snapshot(userIds, balanceUserIds, balances, accountOwners, transactionIds,
+                    watermarkFile, watermarkOffset, watermarkChecksum);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first, so an existing snapshot is only replaced by a complete one.
+     */
+    public void save(final Path path) {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(watermarkFile);
+            out.writeLong(watermarkOffset);
+            out.writeLong(watermarkChecksum);
+
+            // Owners are written as indices into the table of user ids
+            out.writeInt(userIds.length);
+            for (String userId : userIds) {
+                out.writeUTF(userId);
+            }
+            out.writeInt(balances.length);
+            for (int i = 0; i < balances.length; i++) {
+                out.writeUTF(balanceUserIds[i]);
+                writeMoney(out, balances[i]);
+            }
+            accountOwners.writeTo(out);
+            transactionIds.writeTo(out);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", temporary), e);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not write to file %s", path), e);
+        }
+    }
+
+    private static void writeMoney(DataOutput out, Money amount) throws IOException {
+        out.writeBoolean(amount.isCents());
+        if (amount.isCents()) {
+            out.writeLong(amount.getCents());
+        } else {
+            out.writeUTF(amount.toBigDecimal().toString());
+        }
+    }
+
+    private static Money readMoney(DataInput in) throws IOException {
+        return in.readBoolean() ? Money.ofCents(in.readLong()) : Money.of(new BigDecimal(in.readUTF()));
+    }
+
+    private static long tailChecksum(Path path, long end) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long start = Math.max(0, end - CHECKED_TAIL_SIZE);
+            ByteBuffer tail = ByteBuffer.allocate((int) (end - start));
+            while (tail.hasRemaining() && channel.read(tail, start + tail.position()) > 0) {
+                // Read the whole tail
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(tail.flip());
+            return checksum.getValue();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Can not find or read file %s", path), e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary of strings that are given dense int symbols in the order they are added.
+ * Lookups do not change the table and can run concurrently, adding needs exclusive access.
+ */
+public class SymbolTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] names = new String[MIN_CAPACITY];
+    // Symbol + 1 of the name in the slot, 0 for an empty slot
+    private int[] slots = new int[MIN_CAPACITY * 2];
+    private int size;
+
+    /**
+     * @return symbol of the name, a new one if it was not in the table
+     */
+    public int intern(String name) {
+        int slot = slotOf(name);
+        if (slots[slot] != 0) return slots[slot] - 1;
+        if (size == names.length) names = Arrays.copyOf(names, size * 2);
+        names[size] = name;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) rehash();
+        return size - 1;
+    }
+
+    /**
+     * @return symbol of the name, -1 if it is not in the table
+     */
+    public int find(String name) {
+        return slots[slotOf(name)] - 1;
+    }
+
+    public String name(int symbol) {
+        return names[symbol];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(String name) {
+        int mask = slots.length - 1;
+        int slot = hash(name) & mask;
+        while (slots[slot] != 0 && !names[slots[slot] - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int symbol = 0; symbol < size; symbol++) {
+            int slot = hash(names[symbol]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = symbol + 1;
+        }
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+}
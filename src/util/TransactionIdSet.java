@@ -0,0 +1,175 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of already processed transaction ids.
+ * Canonical lower-case UUIDs are kept as two longs in an open-addressing table,
+ * any other id goes to a plain {@link HashSet}.
+ */
+public class TransactionIdSet implements TransactionIdTable {
+    private static final int UUID_LENGTH = 36;
+    private static final int MIN_CAPACITY = 16;
+    // Largest power of two array length, the table is at most three quarters full
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MAX_UUID_COUNT = MAX_CAPACITY / 4 * 3;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private boolean[] used;
+    private int uuidCount;
+    private final Set<String> otherIds = new HashSet<>();
+
+    public TransactionIdSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public TransactionIdSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize + (expectedSize >> 1) && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    @Override
+    public boolean add(String id) {
+        if (!isUuid(id)) return otherIds.add(id);
+
+        long most = mostSignificantBits(id);
+        long least = leastSignificantBits(id);
+        if (indexOf(most, least) >= 0) return false;
+        if ((uuidCount + 1) * 4L > used.length * 3L) resize();
+        insert(most, least);
+        uuidCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(String id) {
+        if (!isUuid(id)) return otherIds.contains(id);
+
+        long most = mostSignificantBits(id);
+        long least = leastSignificantBits(id);
+        return indexOf(most, least) >= 0;
+    }
+
+    public int size() {
+        return uuidCount + otherIds.size();
+    }
+
+    /**
+     * Writes the ids in a compact binary form, canonical UUIDs take 16 bytes each.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(uuidCount);
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                out.writeLong(mostSigBits[i]);
+                out.writeLong(leastSigBits[i]);
+            }
+        }
+        out.writeInt(otherIds.size());
+        for (String id : otherIds) {
+            out.writeUTF(id);
+        }
+    }
+
+    public static TransactionIdSet readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count > MAX_UUID_COUNT) throw tooManyIds();
+        TransactionIdSet ids = new TransactionIdSet(count);
+        for (int i = 0; i < count; i++) {
+            ids.insert(in.readLong(), in.readLong());
+        }
+        ids.uuidCount = count;
+        int otherCount = in.readInt();
+        for (int i = 0; i < otherCount; i++) {
+            ids.otherIds.add(in.readUTF());
+        }
+        return ids;
+    }
+
+    private int indexOf(long most, long least) {
+        int mask = used.length - 1;
+        for (int i = hash(most, least) & mask; used[i]; i = (i + 1) & mask) {
+            if (mostSigBits[i] == most && leastSigBits[i] == least) return i;
+        }
+        return -1;
+    }
+
+    private void insert(long most, long least) {
+        int mask = used.length - 1;
+        int i = hash(most, least) & mask;
+        while (used[i]) {
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        mostSigBits[i] = most;
+        leastSigBits[i] = least;
+    }
+
+    private void resize() {
+        long[] oldMost = mostSigBits;
+        long[] oldLeast = leastSigBits;
+        boolean[] oldUsed = used;
+        if (oldUsed.length == MAX_CAPACITY) throw tooManyIds();
+        allocate(oldUsed.length << 1);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) insert(oldMost[i], oldLeast[i]);
+        }
+    }
+
+    private static RuntimeException tooManyIds() {
+        return new RuntimeException(String.format("Can not keep more than %d UUID transaction ids", MAX_UUID_COUNT));
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        used = new boolean[capacity];
+    }
+
+    private static int hash(long most, long least) {
+        long h = most * 0x9E3779B97F4A7C15L ^ least;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // Only lower-case hex is accepted so that ids differing in letter case stay distinct
+    static boolean isUuid(String id) {
+        if (id.length() != UUID_LENGTH) return false;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long mostSignificantBits(String uuid) {
+        return parseHex(uuid, 0, 8) << 32 | parseHex(uuid, 9, 13) << 16 | parseHex(uuid, 14, 18);
+    }
+
+    static long leastSignificantBits(String uuid) {
+        return parseHex(uuid, 19, 23) << 48 | parseHex(uuid, 24, 36);
+    }
+
+    private static long parseHex(String id, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = id.charAt(i);
+            value = value << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+}
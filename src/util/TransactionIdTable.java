@@ -0,0 +1,13 @@
+package util;
+
+/**
+ * Ids of already processed transactions, as the validation chain reads and changes them.
+ */
+public interface TransactionIdTable {
+    /**
+     * @return true if the id was not in the table before
+     */
+    boolean add(String id);
+
+    boolean contains(String id);
+}
@@ -0,0 +1,25 @@
+package util;
+
+import dto.Transaction;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pull-based stream of parsed transactions in file order.
+ */
+public interface TransactionSource extends AutoCloseable {
+    /**
+     * @return next transaction or null if there are no more transactions
+     */
+    Transaction next();
+
+    @Override
+    default void close() {
+    }
+
+    static TransactionSource of(final List<Transaction> transactions) {
+        Iterator<Transaction> iterator = transactions.iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+}
@@ -0,0 +1,66 @@
+package util;
+
+import dto.User;
+
+import java.util.List;
+
+/**
+ * Lookup structure for users by id. Every id gets a dense symbol in the order it first appears in the users file,
+ * so state about users can be kept in primitive arrays and maps. Lookups give the same answer as a linear scan for
+ * the first user with the id that is not frozen. Ids that only occur elsewhere, e.g. as account owners in a snapshot,
+ * can be added before processing starts; lookups are thread-safe as long as no ids are added.
+ */
+public class UserIndex {
+    private final List<User> users;
+    private final SymbolTable userIds = new SymbolTable();
+    // First user of every symbol that is not frozen, null if all users with the id are frozen
+    private final User[] activeUsers;
+
+    public UserIndex(final List<User> users) {
+        this.users = users;
+        User[] activeUsers = new User[users.size()];
+        for (User user : users) {
+            int symbol = userIds.intern(user.getUserId());
+            if (activeUsers[symbol] == null && user.getFrozen().equals(User.USER_NOT_FROZEN)) activeUsers[symbol] = user;
+        }
+        this.activeUsers = activeUsers;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return symbol of the user id, -1 if it is unknown
+     */
+    public int symbolOf(String userId) {
+        return userIds.find(userId);
+    }
+
+    /**
+     * @return first user with the symbol that is not frozen, null if there is none
+     */
+    public User activeUser(int symbol) {
+        return symbol < 0 || symbol >= activeUsers.length ? null : activeUsers[symbol];
+    }
+
+    public String userIdOf(int symbol) {
+        return userIds.name(symbol);
+    }
+
+    /**
+     * @return number of symbols, the ids of the users file and the ones added later
+     */
+    public int symbolCount() {
+        return userIds.size();
+    }
+
+    /**
+     * Adds an id that no user in the users file has. Not thread-safe.
+     *
+     * @return symbol of the id
+     */
+    public int addUserId(String userId) {
+        return userIds.intern(userId);
+    }
+}
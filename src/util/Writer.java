@@ -1,33 +1,126 @@
 package util;
 
+import dto.DeclineReason;
 import dto.Event;
+import dto.Money;
 import dto.User;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 public class Writer {
+    private static final byte[] BALANCES_HEADER = "USER_ID,BALANCE\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENTS_HEADER = "TRANSACTION_ID,STATUS,MESSAGE\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] APPROVED_OK = ",APPROVED,OK\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DECLINED = ",DECLINED,".getBytes(StandardCharsets.US_ASCII);
+    private static final int COMPRESSED_BUFFER_SIZE = 1 << 16;
+
     public static void writeBalances(final Path filePath, final List<User> users) {
-        try (final FileWriter writer = new FileWriter(filePath.toFile(), false)) {
-            writer.append("USER_ID,BALANCE\n");
-            for (final var user : users) {
-                writer.append(user.getUserId()).append(",").append(String.format("%.2f", user.getBalance()).replace(",",".")).append("\n");
-            }
-        }catch (IOException e){
-            throw new RuntimeException(String.format("Can not write to file %s", filePath), e);
+        try (final ChannelWriter writer = openWriter(filePath)) {
+            writeBalances(writer, users);
+        }
+    }
+
+    public static void writeBalances(final ChannelWriter writer, final Collection<User> users) {
+        writer.write(BALANCES_HEADER);
+        for (final var user : users) {
+            writer.write(user.getUserId()).write((byte) ',').write(user.getBalance()).write((byte) '\n');
         }
     }
 
     public static void writeEvents(final Path filePath, final List<Event> events) {
-        try (final FileWriter writer = new FileWriter(filePath.toFile(), false)) {
-            writer.append("TRANSACTION_ID,STATUS,MESSAGE\n");
+        try (final EventSink sink = openEvents(filePath)) {
             for (final var event : events) {
-                writer.append(event.transactionId).append(",").append(event.status).append(",").append(event.message).append("\n");
+                sink.accept(event);
+            }
+        }
+    }
+
+    public static void writeEvents(final Path filePath, final EventLog events) {
+        try (final EventSink sink = openEvents(filePath)) {
+            for (int i = 0; i < events.size(); i++) {
+                events.copyTo(i, sink);
             }
-        } catch (IOException e){
+        }
+    }
+
+    /**
+     * Writes the events in the format of the events file, the writer stays open.
+     */
+    public static void writeEvents(final ChannelWriter writer, final EventLog events) {
+        writer.write(EVENTS_HEADER);
+        EventSink sink = new FileEventSink(writer);
+        for (int i = 0; i < events.size(); i++) {
+            events.copyTo(i, sink);
+        }
+    }
+
+    public static EventSink openEvents(final Path filePath) {
+        final ChannelWriter writer = openWriter(filePath);
+        writer.write(EVENTS_HEADER);
+        return new FileEventSink(writer);
+    }
+
+    /**
+     * Files named *.gz are written gzip-compressed.
+     */
+    private static ChannelWriter openWriter(Path filePath) {
+        if (!Reader.isCompressed(filePath)) return new ChannelWriter(filePath);
+        try {
+            OutputStream out = new GZIPOutputStream(Files.newOutputStream(filePath), COMPRESSED_BUFFER_SIZE);
+            return new ChannelWriter(Channels.newChannel(out), "file " + filePath);
+        } catch (IOException e) {
             throw new RuntimeException(String.format("Can not write to file %s", filePath), e);
         }
     }
+
+    private static class FileEventSink implements EventSink {
+        private final ChannelWriter writer;
+
+        private FileEventSink(ChannelWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(Event event) {
+            if (event.reason != null && event.reason.getArgumentCount() == 0) {
+                declined(event.transactionId, event.reason);
+            } else if (event.status.equals(Event.STATUS_APPROVED) && event.message.equals(Event.MESSAGE_OK)) {
+                approved(event.transactionId);
+            } else {
+                writer.write(event.transactionId).write((byte) ',').write(event.status).write((byte) ',').write(event.message).write((byte) '\n');
+            }
+        }
+
+        @Override
+        public void approved(String transactionId) {
+            writer.write(transactionId).write(APPROVED_OK);
+        }
+
+        @Override
+        public void declined(String transactionId, DeclineReason reason, Object... args) {
+            writer.write(transactionId).write(DECLINED);
+            for (int i = 0; i < args.length; i++) {
+                writer.write(reason.getEncodedPart(i));
+                if (args[i] instanceof Money amount) {
+                    writer.write(amount);
+                } else {
+                    writer.write(String.valueOf(args[i]));
+                }
+            }
+            writer.write(reason.getEncodedPart(args.length)).write((byte) '\n');
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+        }
+    }
 }
@@ -0,0 +1,167 @@
+import dto.BinMapping;
+import dto.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.BinIndex;
+import util.EventLog;
+import util.EventSink;
+import util.Metrics;
+import util.Reader;
+import util.TransactionSource;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every engine has to write the same events and balances as processing the transactions one by one.
+ */
+class ProcessingEnginesTest {
+    private static final String[] COUNTRIES = {"EE", "DE", "US", "FI"};
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAW", "DEPOSIT", "WITHDRAW", "REFUND"};
+    private static final String[] METHODS = {"CARD", "TRANSFER"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void twoPhaseEngineGivesTheSameResultAsSequentialProcessing() throws IOException {
+        assertSameResultAsSequentialProcessing("two-phase");
+    }
+
+    @Test
+    void partitionedEngineGivesTheSameResultAsSequentialProcessing() throws IOException {
+        assertSameResultAsSequentialProcessing("partitioned");
+    }
+
+    @Test
+    void pipelinedEngineGivesTheSameResultAsSequentialProcessing() throws IOException {
+        assertSameResultAsSequentialProcessing("pipelined");
+    }
+
+    private void assertSameResultAsSequentialProcessing(String engine) throws IOException {
+        Path usersFile = directory.resolve("users.csv");
+        Path binsFile = directory.resolve("bins.csv");
+        Path transactionsFile = directory.resolve("transactions.csv");
+        generate(new Random(42), usersFile, binsFile, transactionsFile);
+        BinIndex binIndex = new BinIndex(Reader.readBinMappings(binsFile));
+
+        assertEquals(run("sequential", usersFile, binIndex, transactionsFile), run(engine, usersFile, binIndex, transactionsFile));
+    }
+
+    /**
+     * @return events file followed by the balances file
+     */
+    private String run(String engine, Path usersFile, BinIndex binIndex, Path transactionsFile) throws IOException {
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        EventLog events = new EventLog();
+        try (TransactionSource transactions = Reader.openTransactions(transactionsFile)) {
+            switch (engine) {
+                case "sequential" -> {
+                    TeldrassilTransactionProcessor processor = new TeldrassilTransactionProcessor(users, binIndex, events);
+                    Transaction transaction;
+                    while ((transaction = transactions.next()) != null) {
+                        processor.processTransaction(transaction);
+                    }
+                }
+                case "two-phase" -> new TwoPhaseProcessor(4, 64)
+                        .process(transactions, new TeldrassilTransactionProcessor(users, binIndex, events));
+                case "partitioned" -> new PartitionedProcessor(users, binIndex, 4)
+                        .process(transactions, new TeldrassilTransactionProcessor(users, binIndex, events));
+                case "pipelined" -> {
+                    PipelinedProcessor pipeline = new PipelinedProcessor(64, 4, events);
+                    EventSink sink = pipeline.getEventSink();
+                    Metrics metrics = new Metrics();
+                    pipeline.process(transactions, new TeldrassilTransactionProcessor(users, binIndex, sink), metrics);
+                    metrics.write(directory.resolve(engine + "-metrics.json"));
+                }
+                default -> throw new IllegalArgumentException(engine);
+            }
+        }
+        Path eventsFile = directory.resolve(engine + "-events.csv");
+        Path balancesFile = directory.resolve(engine + "-balances.csv");
+        Writer.writeEvents(eventsFile, events);
+        Writer.writeBalances(balancesFile, users.getUsers());
+        return Files.readString(eventsFile) + Files.readString(balancesFile);
+    }
+
+    /**
+     * Users share accounts and transaction ids repeat, so that the stateful rules decline some of the transactions.
+     */
+    static void generate(Random random, Path usersFile, Path binsFile, Path transactionsFile) throws IOException {
+        List<String> users = new ArrayList<>();
+        List<String> userIds = new ArrayList<>();
+        List<String> userCountries = new ArrayList<>();
+        users.add("USER_ID,USERNAME,BALANCE,COUNTRY,FROZEN,DEPOSIT_MIN,DEPOSIT_MAX,WITHDRAW_MIN,WITHDRAW_MAX");
+        for (int i = 0; i < 200; i++) {
+            String id = "user-" + i;
+            String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            userIds.add(id);
+            userCountries.add(country);
+            users.add(String.format(Locale.ROOT, "%s,user%d,%d.%02d,%s,%d,1.00,%d.00,1.00,%d.00", id, i,
+                    random.nextInt(1000), random.nextInt(100), country, random.nextInt(20) == 0 ? 1 : 0,
+                    100 + random.nextInt(900), 100 + random.nextInt(900)));
+        }
+        Files.write(usersFile, users);
+
+        List<String> bins = new ArrayList<>();
+        bins.add("NAME,RANGE_FROM,RANGE_TO,TYPE,COUNTRY");
+        for (int i = 0; i < 20; i++) {
+            String country = Locale.of("", COUNTRIES[random.nextInt(COUNTRIES.length)]).getISO3Country();
+            String type = random.nextInt(4) == 0 ? BinMapping.CREDIT_CARD : BinMapping.DEBIT_CARD;
+            bins.add(String.format("BANK%d,%d,%d,%s,%s", i, 5_000_000_000L + i * 1000L, 5_000_000_000L + i * 1000L + 899, type, country));
+        }
+        Files.write(binsFile, bins);
+
+        List<String> cards = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            cards.add(String.format("%010d%06d", 5_000_000_000L + random.nextInt(20_000), random.nextInt(1_000_000)));
+        }
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String iban = iban(COUNTRIES[random.nextInt(COUNTRIES.length)], random);
+            // Some have wrong check digits
+            ibans.add(random.nextInt(10) == 0 ? iban.substring(0, iban.length() - 1) + "X" : iban);
+        }
+
+        List<String> transactions = new ArrayList<>();
+        List<String> transactionIds = new ArrayList<>();
+        transactions.add("TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER");
+        for (int i = 0; i < 20_000; i++) {
+            String id = !transactionIds.isEmpty() && random.nextInt(20) == 0
+                    ? transactionIds.get(random.nextInt(transactionIds.size())) : "tx-" + i;
+            transactionIds.add(id);
+            int user = random.nextInt(userIds.size());
+            String userId = random.nextInt(50) == 0 ? "unknown-" + i : userIds.get(user);
+            String method = METHODS[random.nextInt(METHODS.length)];
+            // Users mostly use accounts of their own, so that most transactions get past the account check
+            int account = random.nextInt(8) == 0 ? random.nextInt(300) : user;
+            String accountNumber = method.equals("TRANSFER") ? ibans.get(account) : cards.get(account);
+            if (method.equals("TRANSFER") && random.nextInt(3) == 0) accountNumber = iban(userCountries.get(user), random);
+            int cents = random.nextInt(100_000) - (random.nextInt(50) == 0 ? 100_000 : 0);
+            transactions.add(String.format("%s,%s,%s,%s,%s,%s", id, userId, TYPES[random.nextInt(TYPES.length)],
+                    BigDecimal.valueOf(cents, 2).toPlainString(), method, accountNumber));
+        }
+        Files.write(transactionsFile, transactions);
+    }
+
+    private static String iban(String country, Random random) {
+        StringBuilder bban = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            bban.append(random.nextInt(10));
+        }
+        String digits = bban + String.valueOf(country.charAt(0) - 'A' + 10) + (country.charAt(1) - 'A' + 10) + "00";
+        int check = 98 - new BigInteger(digits).mod(BigInteger.valueOf(97)).intValue();
+        return String.format("%s%02d%s", country, check, bban);
+    }
+}
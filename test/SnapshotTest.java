@@ -0,0 +1,214 @@
+import dto.DeclineReason;
+import dto.Money;
+import dto.Transaction;
+import dto.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.AccountOwners;
+import util.BinIndex;
+import util.EventLog;
+import util.Reader;
+import util.Snapshot;
+import util.TransactionIdSet;
+import util.TransactionSource;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatItSaves() throws IOException {
+        Path usersFile = Files.write(directory.resolve("users.csv"), List.of(
+                "USER_ID,USERNAME,BALANCE,COUNTRY,FROZEN,DEPOSIT_MIN,DEPOSIT_MAX,WITHDRAW_MIN,WITHDRAW_MAX",
+                "u1,user1,100.00,US,0,1.00,500.00,1.00,500.00",
+                "u2,user2,20.00,US,0,1.00,500.00,1.00,500.00",
+                "u1,user1b,50.00,US,0,1.00,500.00,1.00,500.00"));
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        users.getUsers().get(0).setBalance(Money.ofCents(11_000));
+        users.getUsers().get(1).setBalance(Money.parse("99999999999999999999.999"));
+        users.getUsers().get(2).setBalance(Money.ofCents(-5));
+        int unknownUser = users.addUserId("u3");
+        AccountOwners owners = new AccountOwners();
+        owners.put("0012345678901234", users.symbolOf("u2"));
+        owners.put("DE89370400440532013000", unknownUser);
+        TransactionIdSet ids = new TransactionIdSet();
+        ids.add("7b2cce17-958a-3855-e54e-1ad1f4cfd336");
+        ids.add("tx-1");
+        Path snapshotFile = directory.resolve("snapshot.bin");
+        new Snapshot(users, owners, ids, null, -1).save(snapshotFile);
+
+        Snapshot snapshot = Snapshot.load(snapshotFile);
+        List<User> loadedUsers = Reader.readUsers(usersFile);
+        snapshot.applyBalances(loadedUsers);
+        for (int i = 0; i < loadedUsers.size(); i++) {
+            assertEquals(users.getUsers().get(i).getUserId(), loadedUsers.get(i).getUserId());
+            assertEquals(users.getUsers().get(i).getBalance().toString(), loadedUsers.get(i).getBalance().toString());
+        }
+        UserIndex loadedIndex = new UserIndex(loadedUsers);
+        AccountOwners loadedOwners = snapshot.getAccountOwners(loadedIndex);
+        assertEquals(2, loadedOwners.size());
+        assertEquals("u2", loadedIndex.userIdOf(loadedOwners.get("0012345678901234")));
+        assertEquals("u3", loadedIndex.userIdOf(loadedOwners.get("DE89370400440532013000")));
+        assertEquals(2, snapshot.getTransactionIds().size());
+        assertTrue(snapshot.getTransactionIds().contains("7b2cce17-958a-3855-e54e-1ad1f4cfd336"));
+        assertTrue(snapshot.getTransactionIds().contains("tx-1"));
+        assertEquals(0, snapshot.resumeOffset(usersFile));
+    }
+
+    @Test
+    void resumesOnlyAFileThatWasAppendedTo() throws IOException {
+        Path transactionsFile = Files.writeString(directory.resolve("transactions.csv"),
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER\ntx-1,u1,DEPOSIT,10.00,CARD,5490259608000001\n");
+        long processedTo = Files.size(transactionsFile);
+        Path snapshotFile = directory.resolve("snapshot.bin");
+        saveEmptySnapshot(snapshotFile, transactionsFile, processedTo);
+
+        assertEquals(processedTo, Snapshot.load(snapshotFile).resumeOffset(transactionsFile));
+        Files.writeString(transactionsFile, "tx-2,u1,DEPOSIT,10.00,CARD,5490259608000001\n", StandardOpenOption.APPEND);
+        assertEquals(processedTo, Snapshot.load(snapshotFile).resumeOffset(transactionsFile));
+        assertEquals(0, Snapshot.load(snapshotFile).resumeOffset(Files.copy(transactionsFile, directory.resolve("copy.csv"))));
+
+        Files.writeString(transactionsFile, Files.readString(transactionsFile).replace("tx-1", "tx-9"));
+        assertEquals(0, Snapshot.load(snapshotFile).resumeOffset(transactionsFile));
+    }
+
+    @Test
+    void resumesAfterALastLineWithoutLineBreak() throws IOException {
+        Path transactionsFile = Files.writeString(directory.resolve("transactions.csv"),
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER\ntx-1,u1,DEPOSIT,10.00,CARD,5490259608000001");
+        long processedTo = Files.size(transactionsFile);
+        Path snapshotFile = directory.resolve("snapshot.bin");
+        saveEmptySnapshot(snapshotFile, transactionsFile, processedTo);
+
+        Files.writeString(transactionsFile, "\ntx-2,u1,DEPOSIT,10.00,CARD,5490259608000001\n", StandardOpenOption.APPEND);
+        assertEquals(processedTo + 1, Snapshot.load(snapshotFile).resumeOffset(transactionsFile));
+    }
+
+    @Test
+    void resumingGivesTheSameResultAsOneRun() throws IOException {
+        Path usersFile = directory.resolve("users.csv");
+        Path binsFile = directory.resolve("bins.csv");
+        Path allTransactionsFile = directory.resolve("all.csv");
+        ProcessingEnginesTest.generate(new Random(42), usersFile, binsFile, allTransactionsFile);
+        BinIndex binIndex = new BinIndex(Reader.readBinMappings(binsFile));
+        UserIndex expectedUsers = new UserIndex(Reader.readUsers(usersFile));
+        EventLog expectedEvents = new EventLog();
+        process(new TeldrassilTransactionProcessor(expectedUsers, binIndex, expectedEvents), Reader.openTransactions(allTransactionsFile));
+
+        List<String> lines = Files.readAllLines(allTransactionsFile);
+        Path transactionsFile = Files.write(directory.resolve("transactions.csv"), lines.subList(0, lines.size() / 2));
+        long processedTo = Files.size(transactionsFile);
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        AccountOwners owners = new AccountOwners();
+        TransactionIdSet ids = new TransactionIdSet();
+        EventLog events = new EventLog();
+        process(new TeldrassilTransactionProcessor(users, binIndex, events, owners, ids), Reader.openTransactions(transactionsFile));
+        Path snapshotFile = directory.resolve("snapshot.bin");
+        new Snapshot(users, owners, ids, transactionsFile, processedTo).save(snapshotFile);
+        Files.write(transactionsFile, lines.subList(lines.size() / 2, lines.size()), StandardOpenOption.APPEND);
+
+        Snapshot snapshot = Snapshot.load(snapshotFile);
+        UserIndex resumedUsers = new UserIndex(Reader.readUsers(usersFile));
+        snapshot.applyBalances(resumedUsers.getUsers());
+        long from = snapshot.resumeOffset(transactionsFile);
+        assertEquals(processedTo, from);
+        process(new TeldrassilTransactionProcessor(resumedUsers, binIndex, events, snapshot.getAccountOwners(resumedUsers),
+                snapshot.getTransactionIds()), Reader.openTransactions(transactionsFile, from, Long.MAX_VALUE));
+
+        assertEquals(eventsFile(expectedEvents), eventsFile(events));
+        assertEquals(balancesFile(expectedUsers), balancesFile(resumedUsers));
+    }
+
+    @Test
+    void declinesReplayedTransactionsAsDuplicates() throws IOException {
+        Path usersFile = directory.resolve("users.csv");
+        Path binsFile = directory.resolve("bins.csv");
+        Path transactionsFile = directory.resolve("transactions.csv");
+        ProcessingEnginesTest.generate(new Random(42), usersFile, binsFile, transactionsFile);
+        BinIndex binIndex = new BinIndex(Reader.readBinMappings(binsFile));
+        List<Transaction> transactions = Reader.readTransactions(transactionsFile);
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        AccountOwners owners = new AccountOwners();
+        TransactionIdSet ids = new TransactionIdSet();
+        EventLog firstEvents = new EventLog();
+        int[] firstEvent = process(new TeldrassilTransactionProcessor(users, binIndex, firstEvents, owners, ids), transactions, firstEvents);
+        Path snapshotFile = directory.resolve("snapshot.bin");
+        new Snapshot(users, owners, ids, transactionsFile, Files.size(transactionsFile)).save(snapshotFile);
+
+        // Another file than the snapshot was taken for is read from the start
+        Path replayedFile = Files.copy(transactionsFile, directory.resolve("replayed.csv"));
+        Snapshot snapshot = Snapshot.load(snapshotFile);
+        assertEquals(0, snapshot.resumeOffset(replayedFile));
+        UserIndex replayedUsers = new UserIndex(Reader.readUsers(usersFile));
+        snapshot.applyBalances(replayedUsers.getUsers());
+        EventLog events = new EventLog();
+        int[] event = process(new TeldrassilTransactionProcessor(replayedUsers, binIndex, events,
+                snapshot.getAccountOwners(replayedUsers), snapshot.getTransactionIds()), Reader.readTransactions(replayedFile), events);
+
+        // Transactions that were declined without an event are not in the snapshot, the same rule declines them again
+        int duplicates = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            if (firstEvent[i] < 0) continue;
+            String id = transactions.get(i).getTransactionId();
+            String message = events.get(event[i]).message;
+            // The user is checked before the id, transactions of unknown users are declined for that again
+            if (!message.equals(firstEvents.get(firstEvent[i]).message)) {
+                assertEquals(DeclineReason.DUPLICATE_TRANSACTION.format(id), message);
+            }
+            assertEquals(id, events.getTransactionId(event[i]));
+            if (message.equals(DeclineReason.DUPLICATE_TRANSACTION.format(id))) duplicates++;
+        }
+        assertTrue(duplicates > transactions.size() / 2, String.valueOf(duplicates));
+        assertEquals(balancesFile(users), balancesFile(replayedUsers));
+    }
+
+    /**
+     * @return index of the event of every transaction, -1 if it got none
+     */
+    private static int[] process(TeldrassilTransactionProcessor processor, List<Transaction> transactions, EventLog events) {
+        int[] event = new int[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            int size = events.size();
+            processor.processTransaction(transactions.get(i));
+            event[i] = events.size() > size ? size : -1;
+        }
+        return event;
+    }
+
+    private static void saveEmptySnapshot(Path snapshotFile, Path transactionsFile, long processedTo) {
+        new Snapshot(new UserIndex(List.of()), new AccountOwners(), new TransactionIdSet(), transactionsFile, processedTo).save(snapshotFile);
+    }
+
+    private static void process(TeldrassilTransactionProcessor processor, TransactionSource transactions) {
+        try (transactions) {
+            Transaction transaction;
+            while ((transaction = transactions.next()) != null) {
+                processor.processTransaction(transaction);
+            }
+        }
+    }
+
+    private String eventsFile(EventLog events) throws IOException {
+        Path eventsFile = directory.resolve("events.csv");
+        Writer.writeEvents(eventsFile, events);
+        return Files.readString(eventsFile);
+    }
+
+    private String balancesFile(UserIndex users) throws IOException {
+        Path balancesFile = directory.resolve("balances.csv");
+        Writer.writeBalances(balancesFile, users.getUsers());
+        return Files.readString(balancesFile);
+    }
+}
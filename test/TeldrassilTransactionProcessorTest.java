@@ -0,0 +1,47 @@
+import dto.Transaction;
+import dto.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.BinIndex;
+import util.EventLog;
+import util.Reader;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TeldrassilTransactionProcessorTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void declinesIbansThatAreNoNumberWithoutAnEvent() throws IOException {
+        Path usersFile = Files.write(directory.resolve("users.csv"), List.of(
+                "USER_ID,USERNAME,BALANCE,COUNTRY,FROZEN,DEPOSIT_MIN,DEPOSIT_MAX,WITHDRAW_MIN,WITHDRAW_MAX",
+                "u1,user1,100.00,DE,0,1.00,500.00,1.00,500.00"));
+        Path transactionsFile = Files.write(directory.resolve("transactions.csv"), List.of(
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER",
+                "t1,u1,DEPOSIT,10.00,TRANSFER,DE89370400440532013000",
+                "t2,u1,DEPOSIT,10.00,TRANSFER,DE89370400440532013001",
+                "t3,u1,DEPOSIT,10.00,TRANSFER,DE89 3704 0044 0532 0130 00",
+                "t4,u1,DEPOSIT,10.00,TRANSFER,DE89370400440532013000"));
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        EventLog events = new EventLog();
+        TeldrassilTransactionProcessor processor = new TeldrassilTransactionProcessor(users, new BinIndex(List.of()), events);
+        for (Transaction transaction : Reader.readTransactions(transactionsFile)) {
+            processor.processTransaction(transaction);
+        }
+
+        Path eventsFile = directory.resolve("events.csv");
+        Writer.writeEvents(eventsFile, events);
+        assertEquals(List.of("TRANSACTION_ID,STATUS,MESSAGE", "t1,APPROVED,OK", "t2,DECLINED,Invalid iban DE89370400440532013001",
+                "t4,APPROVED,OK"), Files.readAllLines(eventsFile));
+        User user = users.getUsers().get(0);
+        assertEquals("120.00", user.getBalance().toString());
+    }
+}
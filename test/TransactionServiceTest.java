@@ -0,0 +1,114 @@
+import com.sun.net.httpserver.HttpServer;
+import dto.Transaction;
+import dto.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.BinIndex;
+import util.EventLog;
+import util.Reader;
+import util.UserIndex;
+import util.Writer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionServiceTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void answersABatchLikeTheBatchRun() throws Exception {
+        Path usersFile = directory.resolve("users.csv");
+        Path binsFile = directory.resolve("bins.csv");
+        Path transactionsFile = directory.resolve("transactions.csv");
+        ProcessingEnginesTest.generate(new Random(42), usersFile, binsFile, transactionsFile);
+        BinIndex binIndex = new BinIndex(Reader.readBinMappings(binsFile));
+
+        UserIndex users = new UserIndex(Reader.readUsers(usersFile));
+        EventLog events = new EventLog();
+        TeldrassilTransactionProcessor processor = new TeldrassilTransactionProcessor(users, binIndex, events);
+        Map<String, User> batchUsers = new LinkedHashMap<>();
+        for (Transaction transaction : Reader.readTransactions(transactionsFile)) {
+            processor.processTransaction(transaction);
+            User user = users.activeUser(users.symbolOf(transaction.getUserId()));
+            if (user != null) batchUsers.putIfAbsent(user.getUserId(), user);
+        }
+
+        HttpServer server = new TransactionService(Reader.readUsers(usersFile), binIndex, null).start(0);
+        try {
+            HttpResponse<String> response = post(server, transactionsFile);
+            assertEquals(200, response.statusCode());
+            assertEquals(eventsFile(events) + "\n" + balancesFile(List.copyOf(batchUsers.values())), response.body());
+
+            HttpResponse<String> balances = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(uri(server, "/balances")).build(), HttpResponse.BodyHandlers.ofString(Charset.defaultCharset()));
+            assertEquals(200, balances.statusCode());
+            assertEquals(balancesFile(users.getUsers()), balances.body());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void answersAFailedBatchWithTheTransactionsCommittedBeforeTheFailure() throws Exception {
+        Path usersFile = Files.write(directory.resolve("users.csv"), List.of(
+                "USER_ID,USERNAME,BALANCE,COUNTRY,FROZEN,DEPOSIT_MIN,DEPOSIT_MAX,WITHDRAW_MIN,WITHDRAW_MAX",
+                "u1,user1,100.00,US,0,1.00,500.00,1.00,500.00",
+                "u2,user2,100.00,ZZZ,0,1.00,500.00,1.00,500.00"));
+        Path binsFile = Files.write(directory.resolve("bins.csv"), List.of(
+                "NAME,RANGE_FROM,RANGE_TO,TYPE,COUNTRY",
+                "BANK0,5490259608,5490260756,DC,USA"));
+        Path transactionsFile = Files.write(directory.resolve("transactions.csv"), List.of(
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER",
+                "t1,u1,DEPOSIT,10.00,CARD,5490259608000001",
+                "t2,u2,DEPOSIT,10.00,CARD,5490259608000002",
+                "t3,u1,DEPOSIT,10.00,CARD,5490259608000001"));
+
+        HttpServer server = new TransactionService(Reader.readUsers(usersFile), new BinIndex(Reader.readBinMappings(binsFile)), null).start(0);
+        try {
+            HttpResponse<String> response = post(server, transactionsFile);
+            assertEquals(500, response.statusCode());
+            String committed = "TRANSACTION_ID,STATUS,MESSAGE\nt1,APPROVED,OK\n\nUSER_ID,BALANCE\nu1,110.00\n\n";
+            assertTrue(response.body().startsWith(committed), response.body());
+            String error = response.body().substring(committed.length());
+            assertTrue(error.endsWith("\n") && error.indexOf('\n') == error.length() - 1 && error.length() > 1, error);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpResponse<String> post(HttpServer server, Path transactionsFile) throws IOException, InterruptedException {
+        return HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(uri(server, "/transactions")).POST(HttpRequest.BodyPublishers.ofFile(transactionsFile)).build(),
+                HttpResponse.BodyHandlers.ofString(Charset.defaultCharset()));
+    }
+
+    private static URI uri(HttpServer server, String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private String eventsFile(EventLog events) throws IOException {
+        Path eventsFile = directory.resolve("events.csv");
+        Writer.writeEvents(eventsFile, events);
+        return Files.readString(eventsFile, Charset.defaultCharset());
+    }
+
+    private String balancesFile(List<User> users) throws IOException {
+        Path balancesFile = directory.resolve("balances.csv");
+        Writer.writeBalances(balancesFile, users);
+        return Files.readString(balancesFile, Charset.defaultCharset());
+    }
+}
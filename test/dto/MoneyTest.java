@@ -0,0 +1,65 @@
+package dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    private static final String[] AMOUNTS = {
+            "0", "-0", "+0", "5", "5.", "5.1", "5.10", "-5.01", "+5.01", "0.001", "5.123", "-5.129", "1e2", "-1E-2", ".5", "-.5",
+            "1234567890123456", "1234567890123456.78", "-1234567890123456.78",
+            "12345678901234567", "12345678901234567.8", "-12345678901234567.89",
+            "123456789012345678", "-123456789012345678", "123456789012345678.9", "999999999999999999.99",
+            "9223372036854775807", "92233720368547758.07", "-92233720368547758.08", "00000000000000000000001.00",
+            "99999999999999999999.99"
+    };
+
+    @Test
+    void parsesLikeBigDecimal() {
+        for (String amount : AMOUNTS) {
+            BigDecimal expected = new BigDecimal(amount);
+            Money money = Money.parse(amount);
+            assertEquals(0, expected.compareTo(money.toBigDecimal()), amount);
+            assertEquals(String.format("%.2f", expected).replace(",", "."), money.toString(), amount);
+        }
+    }
+
+    @Test
+    void parsesCentsOnlyWhenTheyFitInALong() {
+        assertEquals(123_456_789_012_345_678L, parseCents("1234567890123456.78"));
+        assertEquals(-123_456_789_012_345_600L, parseCents("-1234567890123456"));
+        assertEquals(500, parseCents("5."));
+        assertEquals(510, parseCents("+5.1"));
+        assertEquals(Long.MIN_VALUE, parseCents("12345678901234567"));
+        assertEquals(Long.MIN_VALUE, parseCents("12345678901234567.8"));
+        assertEquals(Long.MIN_VALUE, parseCents("123456789012345678"));
+        assertEquals(Long.MIN_VALUE, parseCents("5.123"));
+        assertEquals(Long.MIN_VALUE, parseCents("1e2"));
+        assertEquals(Long.MIN_VALUE, parseCents(".5"));
+        assertEquals(Long.MIN_VALUE, parseCents("-"));
+        assertEquals(Long.MIN_VALUE, parseCents(""));
+    }
+
+    @Test
+    void parsesTheSameCentsFromBytes() {
+        for (String amount : AMOUNTS) {
+            byte[] bytes = (" " + amount + " ").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(parseCents(amount), Money.parseCents(bytes, 1, bytes.length - 1), amount);
+        }
+    }
+
+    @Test
+    void rejectsWhatBigDecimalRejects() {
+        for (String amount : new String[]{"", "-", "abc", "1.2.3", "1,00", " 1"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(amount), amount);
+        }
+    }
+
+    private static long parseCents(String amount) {
+        return Money.parseCents(amount, 0, amount.length());
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountOwnersTest {
+    @Test
+    void keepsLeadingZerosOfCardNumbers() {
+        AccountOwners owners = new AccountOwners();
+        owners.put("0012345", 1);
+        owners.put("12345", 2);
+        owners.put("012345", 3);
+        assertEquals(1, owners.get("0012345"));
+        assertEquals(2, owners.get("12345"));
+        assertEquals(3, owners.get("012345"));
+        assertEquals(AccountOwners.NO_OWNER, owners.get("00012345"));
+        assertEquals(3, owners.size());
+    }
+
+    @Test
+    void keepsOtherAccountsByTheirNumber() {
+        AccountOwners owners = new AccountOwners();
+        owners.put("DE89370400440532013000", 1);
+        owners.put("123456789012345678", 2);
+        owners.put("", 3);
+        assertEquals(1, owners.get("DE89370400440532013000"));
+        assertEquals(2, owners.get("123456789012345678"));
+        assertEquals(3, owners.get(""));
+        assertEquals(AccountOwners.NO_OWNER, owners.get("DE89370400440532013001"));
+    }
+
+    @Test
+    void replacesTheOwner() {
+        AccountOwners owners = new AccountOwners();
+        owners.put("4111111111111111", 1);
+        owners.put("4111111111111111", 2);
+        assertEquals(2, owners.get("4111111111111111"));
+        assertEquals(1, owners.size());
+    }
+
+    @Test
+    void growsAndMergesLikeAMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        Map<String, Integer> expectedOther = new HashMap<>();
+        AccountOwners owners = new AccountOwners();
+        AccountOwners other = new AccountOwners();
+        for (int i = 0; i < 20_000; i++) {
+            String account = random.nextInt(4) == 0
+                    ? "EE" + random.nextInt(10_000)
+                    : Long.toString(random.nextLong(random.nextBoolean() ? 10_000 : 1_000_000_000_000_000L));
+            if (random.nextBoolean()) {
+                owners.put(account, i);
+                expected.put(account, i);
+            } else {
+                other.put(account, i);
+                expectedOther.put(account, i);
+            }
+        }
+        owners.putAll(other);
+        expected.putAll(expectedOther);
+
+        assertEquals(expected.size(), owners.size());
+        expected.forEach((account, owner) -> assertEquals(owner, owners.get(account), account));
+        Map<String, Integer> visited = new HashMap<>();
+        owners.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        AccountOwners owners = new AccountOwners();
+        owners.put("0012345", 1);
+        owners.put("DE89370400440532013000", 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        owners.writeTo(new DataOutputStream(bytes));
+
+        AccountOwners read = AccountOwners.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, read.size());
+        assertEquals(1, read.get("0012345"));
+        assertEquals(2, read.get("DE89370400440532013000"));
+    }
+}
@@ -0,0 +1,121 @@
+package util;
+
+import dto.BinMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BinIndexTest {
+    @Test
+    void findsTheFirstRangeOfTheFile() {
+        BinMapping wide = mapping("WIDE", 100, 199);
+        BinMapping inner = mapping("INNER", 120, 129);
+        BinMapping later = mapping("LATER", 190, 250);
+        BinIndex index = new BinIndex(List.of(wide, inner, later));
+
+        assertNull(index.find(99));
+        assertSame(wide, index.find(100));
+        assertSame(wide, index.find(125));
+        assertSame(wide, index.find(199));
+        assertSame(later, index.find(200));
+        assertSame(later, index.find(250));
+        assertNull(index.find(251));
+        assertNull(index.find(-1));
+    }
+
+    @Test
+    void findsTheSameAsALinearScan() {
+        Random random = new Random(42);
+        List<BinMapping> mappings = randomMappings(random);
+        BinIndex index = new BinIndex(mappings);
+        for (int i = 0; i < 100_000; i++) {
+            long prefix = random.nextInt(1_100_000);
+            // Twice, the second lookup is answered from the memo
+            assertSame(linearScan(mappings, prefix), index.find(prefix));
+            assertSame(linearScan(mappings, prefix), index.find(prefix));
+        }
+    }
+
+    @Test
+    void threadsSharingTheMemoFindTheSameAsALinearScan() throws InterruptedException {
+        List<BinMapping> mappings = randomMappings(new Random(42));
+        BinIndex index = new BinIndex(mappings);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    // Few distinct prefixes, so the threads keep overwriting each other's memo entries
+                    long prefix = random.nextInt(20_000) * 55L;
+                    if (linearScan(mappings, prefix) != index.find(prefix)) failures.add(new AssertionError(prefix));
+                }
+            });
+            thread.setUncaughtExceptionHandler((failed, e) -> failures.add(e));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+    }
+
+    @Test
+    void compiledIndexFindsTheSameRanges(@TempDir Path directory) throws IOException {
+        Random random = new Random(7);
+        List<BinMapping> mappings = randomMappings(random);
+        List<String> lines = new ArrayList<>();
+        lines.add("NAME,RANGE_FROM,RANGE_TO,TYPE,COUNTRY");
+        for (BinMapping mapping : mappings) {
+            lines.add(String.join(",", mapping.getName(), mapping.getRangeFrom().toString(), mapping.getRangeTo().toString(),
+                    mapping.getType(), mapping.getCountry()));
+        }
+        Path binMappingsFile = Files.write(directory.resolve("bins.csv"), lines);
+
+        BinIndex index = ReferenceData.open(binMappingsFile, directory.resolve("bins.ref")).getBinIndex();
+        for (int i = 0; i < 100_000; i++) {
+            long prefix = random.nextInt(1_100_000);
+            BinMapping expected = linearScan(mappings, prefix);
+            BinMapping actual = index.find(prefix);
+            assertEquals(expected == null ? null : expected.getName(), actual == null ? null : actual.getName());
+        }
+    }
+
+    private static List<BinMapping> randomMappings(Random random) {
+        List<BinMapping> mappings = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long from = random.nextInt(1_000_000);
+            mappings.add(mapping("BANK" + i, from, from + random.nextInt(5_000)));
+        }
+        return mappings;
+    }
+
+    private static BinMapping linearScan(List<BinMapping> mappings, long prefix) {
+        for (BinMapping mapping : mappings) {
+            if (mapping.getRangeFrom() <= prefix && prefix <= mapping.getRangeTo()) return mapping;
+        }
+        return null;
+    }
+
+    private static BinMapping mapping(String name, long from, long to) {
+        BinMapping mapping = new BinMapping();
+        mapping.setName(name);
+        mapping.setRangeFrom(from);
+        mapping.setRangeTo(to);
+        mapping.setType(BinMapping.DEBIT_CARD);
+        mapping.setCountry("EST");
+        return mapping;
+    }
+}
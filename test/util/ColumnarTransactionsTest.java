@@ -0,0 +1,100 @@
+package util;
+
+import dto.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarTransactionsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTheSameTransactionsAsTheCsvFile() throws IOException {
+        Path csvFile = Files.write(directory.resolve("transactions.csv"), List.of(
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER",
+                "7b2cce17-958a-3855-e54e-1ad1f4cfd336,u1,WITHDRAW,2725.71,CARD,5449183979882633",
+                "7B2CCE17-958A-3855-E54E-1AD1F4CFD336,u1,DEPOSIT,10,TRANSFER,DE89370400440532013000",
+                "tx-3,u2,REFUND,-1.5,TRANSFER,EE382200221020145685",
+                "tx-4,u2,DEPOSIT,0.123456789,CARD,0012345678901234",
+                "tx-5,u2,DEPOSIT,1.00,CASH,5449183979882633",
+                "tx-6,u2,DEPOSIT,abc,CARD,5449183979882633",
+                "tx-7,u2,DEPOSIT",
+                "tx-8,ü,DEPOSIT,99999999999999999999.99,TRANSFER,ÄÖ"));
+        Path columnarFile = directory.resolve("transactions" + ColumnarTransactions.SUFFIX);
+        ColumnarTransactions.convert(csvFile, columnarFile);
+
+        assertTrue(ColumnarTransactions.isColumnar(columnarFile));
+        assertSameTransactions(Reader.readTransactions(csvFile), Reader.readTransactions(columnarFile));
+    }
+
+    @Test
+    void readsManyGeneratedTransactions() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        lines.add("TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER");
+        for (int i = 0; i < 10_000; i++) {
+            String id = random.nextBoolean() ? new UUID(random.nextLong(), random.nextLong()).toString() : "tx-" + i;
+            String account = random.nextBoolean()
+                    ? String.format("%016d", random.nextLong(10_000_000_000_000_000L))
+                    : "EE" + random.nextInt(1_000_000);
+            lines.add(String.format("%s,user-%d,%s,%d.%02d,%s,%s", id, random.nextInt(100),
+                    random.nextBoolean() ? "DEPOSIT" : "WITHDRAW", random.nextInt(10_000), random.nextInt(100),
+                    random.nextBoolean() ? "CARD" : "TRANSFER", account));
+        }
+        Path csvFile = Files.write(directory.resolve("generated.csv"), lines);
+        Path columnarFile = directory.resolve("generated" + ColumnarTransactions.SUFFIX);
+        ColumnarTransactions.convert(csvFile, columnarFile);
+
+        assertSameTransactions(Reader.readTransactions(csvFile), Reader.readTransactions(columnarFile));
+    }
+
+    @Test
+    void rejectsAnIncompleteFile() throws IOException {
+        Path csvFile = Files.write(directory.resolve("transactions.csv"), List.of(
+                "TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER",
+                "tx-1,u1,DEPOSIT,1.00,CARD,5449183979882633"));
+        Path columnarFile = directory.resolve("transactions" + ColumnarTransactions.SUFFIX);
+        ColumnarTransactions.convert(csvFile, columnarFile);
+        byte[] bytes = Files.readAllBytes(columnarFile);
+        Files.write(columnarFile, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(RuntimeException.class, () -> ColumnarTransactions.open(columnarFile));
+    }
+
+    @Test
+    void leavesNoTemporaryFilesWhenConversionFails() throws IOException {
+        Path columnarFile = directory.resolve("missing" + ColumnarTransactions.SUFFIX);
+        assertThrows(RuntimeException.class, () -> ColumnarTransactions.convert(directory.resolve("missing.csv"), columnarFile));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static void assertSameTransactions(List<Transaction> expected, List<Transaction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Transaction e = expected.get(i);
+            Transaction a = actual.get(i);
+            assertEquals(e.getTransactionId(), a.getTransactionId());
+            assertEquals(e.getUserId(), a.getUserId());
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getAmount(), a.getAmount());
+            assertEquals(e.getAmount().toString(), a.getAmount().toString());
+            assertEquals(e.getMethod(), a.getMethod());
+            assertEquals(e.getAccountNumber(), a.getAccountNumber());
+        }
+    }
+}
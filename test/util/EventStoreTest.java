@@ -0,0 +1,102 @@
+package util;
+
+import dto.DeclineReason;
+import dto.Event;
+import dto.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsTheEventsOfATransaction() {
+        Path storeFile = directory.resolve("events" + EventStore.SUFFIX);
+        EventLog log = new EventLog();
+        try (EventSink sink = EventStore.writeAlongside(log, storeFile)) {
+            sink.approved("7b2cce17-958a-3855-e54e-1ad1f4cfd336");
+            sink.declined("7b2cce17-958a-3855-e54e-1ad1f4cfd336", DeclineReason.DUPLICATE_TRANSACTION, "7b2cce17-958a-3855-e54e-1ad1f4cfd336");
+            sink.declined("tx-2", DeclineReason.OVER_DEPOSIT_LIMIT, Money.ofCents(12_345), Money.ofCents(10_000));
+            sink.declined("tx-3", DeclineReason.NOT_ENOUGH_BALANCE, Money.of(new BigDecimal("99999999999999999999.99")), Money.ofCents(-5));
+            sink.declined("tx-4", DeclineReason.INVALID_CARD_COUNTRY, "EST", "FI", "FIN");
+            sink.declined("TX-ü", DeclineReason.CREDIT_CARD);
+            sink.accept(new Event("tx-5", Event.STATUS_DECLINED, "Some other message"));
+        }
+
+        EventStore store = EventStore.open(storeFile);
+        assertEquals(log.size(), store.size());
+        assertEquals(List.of("APPROVED,OK", "DECLINED,Transaction 7b2cce17-958a-3855-e54e-1ad1f4cfd336 already processed (id non-unique)"),
+                describe(store.find("7b2cce17-958a-3855-e54e-1ad1f4cfd336")));
+        assertEquals(List.of("DECLINED,Amount 123.45 is over the deposit limit of 100.00"), describe(store.find("tx-2")));
+        assertEquals(List.of("DECLINED,Not enough balance to withdraw 99999999999999999999.99 - balance is too low at -0.05"),
+                describe(store.find("tx-3")));
+        assertEquals(List.of("DECLINED,Invalid country EST; expected FI (FIN)"), describe(store.find("tx-4")));
+        assertEquals(List.of("DECLINED,Only DC cards allowed; got CC"), describe(store.find("TX-ü")));
+        assertEquals(List.of("DECLINED,Some other message"), describe(store.find("tx-5")));
+    }
+
+    @Test
+    void findsNothingForUnknownIds() {
+        Path storeFile = directory.resolve("events" + EventStore.SUFFIX);
+        try (EventSink sink = EventStore.writeAlongside(new EventLog(), storeFile)) {
+            sink.approved("7b2cce17-958a-3855-e54e-1ad1f4cfd336");
+            sink.approved("tx-1");
+        }
+
+        EventStore store = EventStore.open(storeFile);
+        assertTrue(store.find("7b2cce17-958a-3855-e54e-1ad1f4cfd337").isEmpty());
+        assertTrue(store.find("7B2CCE17-958A-3855-E54E-1AD1F4CFD336").isEmpty());
+        assertTrue(store.find("tx-2").isEmpty());
+        assertTrue(store.find("").isEmpty());
+    }
+
+    @Test
+    void findsTheSameEventsAsTheLog() {
+        Random random = new Random(42);
+        Path storeFile = directory.resolve("events" + EventStore.SUFFIX);
+        EventLog log = new EventLog();
+        List<String> ids = new ArrayList<>();
+        try (EventSink sink = EventStore.writeAlongside(log, storeFile)) {
+            for (int i = 0; i < 50_000; i++) {
+                String id = !ids.isEmpty() && random.nextInt(10) == 0 ? ids.get(random.nextInt(ids.size()))
+                        : random.nextBoolean() ? new UUID(random.nextLong(), random.nextLong()).toString() : "tx-" + i;
+                ids.add(id);
+                if (random.nextBoolean()) {
+                    sink.approved(id);
+                } else {
+                    sink.declined(id, DeclineReason.UNDER_WITHDRAW_LIMIT, Money.ofCents(random.nextInt(1_000_000)), Money.ofCents(100));
+                }
+            }
+        }
+
+        Map<String, List<String>> expected = new HashMap<>();
+        for (int i = 0; i < log.size(); i++) {
+            Event event = log.get(i);
+            expected.computeIfAbsent(event.transactionId, id -> new ArrayList<>()).add(event.status + "," + event.message);
+        }
+        EventStore store = EventStore.open(storeFile);
+        assertEquals(log.size(), store.size());
+        expected.forEach((id, events) -> assertEquals(events, describe(store.find(id)), id));
+    }
+
+    private static List<String> describe(List<Event> events) {
+        List<String> described = new ArrayList<>();
+        for (Event event : events) {
+            described.add(event.status + "," + event.message);
+        }
+        return described;
+    }
+}
@@ -0,0 +1,118 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IbanValidatorTest {
+    private static final String[] IBANS = {
+            "DE89370400440532013000", "GB82WEST12345698765432", "NL91ABNA0417164300", "NO9386011117947", "LC55HEMM000100010012001200023015",
+            "DE89370400440532013001", "GB82WEST12345698765433", "GB00WEST12345698765432",
+            "de89370400440532013000", "gb82west12345698765432", "Gb82WeSt12345698765432",
+            "NO938601111794", "MT84MALT011000012345MTLCAST001SXX", "LC55HEMM000100010012001200023015X", "DE89370400440532013000DE89370400440",
+            "GB82 WEST 1234 5698 7654 32", "GB82-WEST12345698765432", "DE89370400440532013000 ", "DE89+370400440532013000",
+            "DE89-370400440532013000", "DE89٣٧٠400440532013000",
+            "ＤＥ８９370400440532013000", "DE89370400440532013ß00", "DE89370400440532013ä00", "DE89370400440532½13000",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ", "000000000000000", "9999999999999999999999999999999999"
+    };
+
+    @Test
+    void checksLikeTheBigIntegerConversion() {
+        for (String iban : IBANS) {
+            assertEquals(baseline(iban), IbanValidator.check(iban), iban);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String iban = randomIban(random);
+            assertEquals(baseline(iban), IbanValidator.check(iban), iban);
+        }
+    }
+
+    @Test
+    void acceptsValidAndLowercaseIbans() {
+        assertEquals(IbanValidator.Result.VALID, IbanValidator.check("DE89370400440532013000"));
+        assertEquals(IbanValidator.Result.VALID, IbanValidator.check("gb82west12345698765432"));
+        assertEquals(IbanValidator.Result.INVALID, IbanValidator.check("GB82WEST12345698765433"));
+        assertEquals(IbanValidator.Result.INVALID, IbanValidator.check("DE89370400440532013000DE89370400440"));
+    }
+
+    @Test
+    void reportsIbansThatAreNoNumberAsMalformed() {
+        // The processor declines these without an event, like the original BigInteger conversion that failed
+        assertEquals(IbanValidator.Result.MALFORMED, IbanValidator.check("GB82 WEST 1234 5698 7654 32"));
+        assertEquals(IbanValidator.Result.MALFORMED, IbanValidator.check("GB82WEST-12345698765432"));
+        assertEquals(IbanValidator.Result.MALFORMED, IbanValidator.check("DE89370400440532013ß00"));
+        // A sign in front of the rearranged number is still a number
+        assertEquals(IbanValidator.Result.INVALID, IbanValidator.check("DE89-370400440532013000"));
+    }
+
+    @Test
+    void cachesResultsWithoutMixingUpIbans() {
+        List<String> ibans = new ArrayList<>(List.of(IBANS));
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            ibans.add(randomIban(random));
+        }
+        // A tiny cache, so entries keep replacing each other
+        IbanValidator validator = new IbanValidator(4);
+        for (int round = 0; round < 3; round++) {
+            for (String iban : ibans) {
+                IbanValidator.Result expected = IbanValidator.check(iban);
+                assertEquals(expected, validator.validate(iban), iban);
+                assertEquals(expected, validator.validate(new String(iban)), iban);
+            }
+        }
+    }
+
+    // Valid, one digit off, lowercase or with an odd character, between 13 and 36 characters long
+    private static String randomIban(Random random) {
+        StringBuilder bban = new StringBuilder();
+        int length = 9 + random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            bban.append(random.nextInt(4) == 0 ? (char) ('A' + random.nextInt(26)) : (char) ('0' + random.nextInt(10)));
+        }
+        String country = "" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26));
+        int check = 98 - new BigInteger(digits(bban + country + "00")).mod(BigInteger.valueOf(97)).intValue();
+        StringBuilder iban = new StringBuilder(country + String.format("%02d", check) + bban);
+        switch (random.nextInt(4)) {
+            case 0:
+                int position = 2 + random.nextInt(iban.length() - 2);
+                iban.setCharAt(position, iban.charAt(position) == '9' ? '0' : '9');
+                break;
+            case 1:
+                return iban.toString().toLowerCase();
+            case 2:
+                iban.setCharAt(random.nextInt(iban.length()), " -+.ß٣Ａ".charAt(random.nextInt(7)));
+                break;
+        }
+        return iban.toString();
+    }
+
+    // The check of the processor before the IbanValidator
+    private static IbanValidator.Result baseline(String iban) {
+        if (iban.length() < 15 || iban.length() > 34) return IbanValidator.Result.INVALID;
+        try {
+            BigInteger checkNumber = new BigInteger(digits(iban.substring(4) + iban.substring(0, 4)));
+            return checkNumber.remainder(BigInteger.valueOf(97)).equals(BigInteger.ONE) ? IbanValidator.Result.VALID : IbanValidator.Result.INVALID;
+        } catch (Exception e) {
+            return IbanValidator.Result.MALFORMED;
+        }
+    }
+
+    private static String digits(String value) {
+        StringBuilder digits = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (Character.isLetter(c)) {
+                digits.append(Character.getNumericValue(c));
+            } else {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package util;
+
+import dto.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelTransactionReaderTest {
+    private static final String[] LINES = {
+            "7b2cce17-958a-3855-e54e-1ad1f4cfd336,u1,WITHDRAW,2725.71,CARD,5449183979882633",
+            "tx-2,u1,DEPOSIT,10,TRANSFER,DE89370400440532013000",
+            "tx-3,u2,REFUND,-1.5,TRANSFER,EE382200221020145685",
+            "tx-4,u2,DEPOSIT,1.00,CASH,5449183979882633",
+            "tx-5,u2,DEPOSIT,abc,CARD,5449183979882633",
+            "tx-6,u2,DEPOSIT",
+            "tx-7,u2,DEPOSIT,1.00,CARD,EE38",
+            "tx-8,ü,DEPOSIT,99999999999999999999.99,TRANSFER,ÄÖ",
+            ""
+    };
+    private static final String[] LINE_BREAKS = {"\n", "\r\n", "\r"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsLinesAcrossChunkBoundariesLikeTheLineReader() throws IOException {
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder("TRANSACTION_ID,USER_ID,TYPE,AMOUNT,METHOD,ACCOUNT_NUMBER\r\n");
+        for (int i = 0; i < 60; i++) {
+            content.append(LINES[random.nextInt(LINES.length)]).append(LINE_BREAKS[random.nextInt(LINE_BREAKS.length)]);
+        }
+        content.append(LINES[0]);
+        Path transactionsFile = Files.writeString(directory.resolve("transactions.csv"), content, Charset.defaultCharset());
+
+        List<String> expectedRejects = new ArrayList<>();
+        List<String> expected = readLines(transactionsFile, expectedRejects);
+        List<String> mappedRejects = new ArrayList<>();
+        assertEquals(expected, read(new MappedTransactionReader(transactionsFile, 0, Long.MAX_VALUE, collect(mappedRejects))));
+        assertEquals(expectedRejects, mappedRejects);
+
+        // Chunks of a few bytes end in every position of a line, also between \r and \n
+        for (int chunkSize = 1; chunkSize <= 200; chunkSize++) {
+            List<String> rejects = new ArrayList<>();
+            List<String> transactions = read(new ParallelTransactionReader(transactionsFile, 0, Long.MAX_VALUE, 3, chunkSize, collect(rejects)));
+            assertEquals(expected, transactions, "chunk size " + chunkSize);
+            assertEquals(expectedRejects, rejects, "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void splitsOnlyAfterALineBreak() throws IOException {
+        Path transactionsFile = Files.writeString(directory.resolve("transactions.csv"), "header\r\na\r\nbc\rd\n\ne");
+        assertArrayEquals(new long[]{0, 8, 11, 14, 16, 18}, ParallelTransactionReader.splitAtLines(transactionsFile, 0, Long.MAX_VALUE, 1));
+        assertArrayEquals(new long[]{0, 11, 18}, ParallelTransactionReader.splitAtLines(transactionsFile, 0, Long.MAX_VALUE, 9));
+        // A lone \r ends a line as well, \r\n is one line break
+        assertArrayEquals(new long[]{8, 11, 14, 16}, ParallelTransactionReader.splitAtLines(transactionsFile, 8, 16, 1));
+    }
+
+    // The line reader of Reader.openTransactions for files that can not be mapped
+    private static List<String> readLines(Path transactionsFile, List<String> rejects) throws IOException {
+        List<String> transactions = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(transactionsFile, Charset.defaultCharset())) {
+            br.readLine();
+            long lineNumber = 1;
+            String line;
+            while ((line = br.readLine()) != null) {
+                Transaction transaction = Reader.processTransaction(line, transactionsFile.toString(), ++lineNumber, collect(rejects));
+                if (transaction != null) transactions.add(describe(transaction));
+            }
+        }
+        return transactions;
+    }
+
+    private static List<String> read(TransactionSource source) {
+        List<String> transactions = new ArrayList<>();
+        try (source) {
+            Transaction transaction;
+            while ((transaction = source.next()) != null) {
+                transactions.add(describe(transaction));
+            }
+        }
+        return transactions;
+    }
+
+    private static RejectSink collect(List<String> rejects) {
+        return (file, lineNumber, reason, line) -> rejects.add(file + "," + lineNumber + "," + reason + "," + line);
+    }
+
+    private static String describe(Transaction transaction) {
+        return String.join(",", transaction.getTransactionId(), transaction.getUserId(), transaction.getType(),
+                transaction.getAmount().toString(), transaction.getMethod(), transaction.getAccountNumber());
+    }
+}
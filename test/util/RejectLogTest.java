@@ -0,0 +1,102 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RejectLogTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void printsASampleAndTheCounts() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RejectLog log = new RejectLog(null, 3, new PrintStream(out, true, StandardCharsets.UTF_8));
+        for (int i = 1; i <= 10; i++) {
+            log.reject("a.csv", i, i % 4 == 0 ? RejectLog.Reason.WRONG_FIELD_COUNT : RejectLog.Reason.NOT_A_NUMBER, "line " + i);
+        }
+        log.reject("b.csv", 2, RejectLog.Reason.CORRUPTED, "line");
+        log.close();
+
+        assertEquals(List.of(
+                "Skipped line 1 in a.csv: Can not convert value to a number: line 1",
+                "Skipped line 2 in a.csv: Can not convert value to a number: line 2",
+                "Skipped line 3 in a.csv: Can not convert value to a number: line 3",
+                "Skipped lines in a.csv: WRONG_FIELD_COUNT=2 NOT_A_NUMBER=8",
+                "Skipped lines in b.csv: CORRUPTED=1"), out.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void writesEveryRejectWhenTheQueueIsFull() throws IOException {
+        Path rejectsFile = directory.resolve("rejects.csv");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RejectLog log = new RejectLog(rejectsFile, 0, new PrintStream(out, true, StandardCharsets.UTF_8));
+        int count = 100_000;
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            for (int i = 1; i <= count; i++) {
+                log.reject("a.csv", i, RejectLog.Reason.CORRUPTED, "line " + i);
+            }
+            log.close();
+        });
+
+        List<String> lines = Files.readAllLines(rejectsFile);
+        assertEquals(count + 1, lines.size());
+        assertEquals("FILE,LINE,REASON,CONTENT", lines.get(0));
+        for (int i = 1; i <= count; i++) {
+            assertEquals("a.csv," + i + ",CORRUPTED,line " + i, lines.get(i));
+        }
+        assertEquals(List.of("Skipped lines in a.csv: CORRUPTED=" + count, "Skipped lines are written to " + rejectsFile),
+                out.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void dropsRejectsAfterCloseWithoutBlocking() throws IOException, InterruptedException {
+        Path rejectsFile = directory.resolve("rejects.csv");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RejectLog log = new RejectLog(rejectsFile, 0, new PrintStream(out, true, StandardCharsets.UTF_8));
+        log.reject("a.csv", 1, RejectLog.Reason.CORRUPTED, "line 1");
+        Thread producer = new Thread(() -> {
+            for (int i = 2; i <= 1_000_000; i++) {
+                log.reject("a.csv", i, RejectLog.Reason.CORRUPTED, "line " + i);
+            }
+        });
+        producer.start();
+        log.close();
+        producer.join(TIMEOUT.toMillis());
+        assertFalse(producer.isAlive());
+
+        // Whatever was written before the close is counted, the rest is dropped
+        long written = Files.readAllLines(rejectsFile).size() - 1;
+        assertEquals("Skipped lines in a.csv: CORRUPTED=" + written, out.toString(StandardCharsets.UTF_8).lines().findFirst().orElseThrow());
+        assertTimeoutPreemptively(TIMEOUT, () -> log.reject("a.csv", 0, RejectLog.Reason.CORRUPTED, "late"));
+    }
+
+    @Test
+    void buffersRejectsUntilTheirLineNumbersAreKnown() {
+        RejectLog.Buffer buffer = RejectLog.buffer();
+        buffer.reject("a.csv", 1, RejectLog.Reason.NOT_A_NUMBER, "first");
+        buffer.reject("a.csv", 3, RejectLog.Reason.CORRUPTED, "third");
+        List<String> rejects = new ArrayList<>();
+        RejectSink sink = (file, lineNumber, reason, line) -> rejects.add(file + "," + lineNumber + "," + reason + "," + line);
+
+        buffer.drainTo(sink, 10);
+        assertEquals(List.of("a.csv,11,NOT_A_NUMBER,first", "a.csv,13,CORRUPTED,third"), rejects);
+        buffer.drainTo(sink, 20);
+        assertEquals(2, rejects.size());
+    }
+}
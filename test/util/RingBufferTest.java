@@ -0,0 +1,96 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RingBufferTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void handsOverSlotsInOrderAndReusesThem() {
+        RingBuffer<int[]> ring = new RingBuffer<>(2, () -> new int[1]);
+        int[] first = ring.claim();
+        first[0] = 1;
+        ring.publish();
+        int[] second = ring.claim();
+        second[0] = 2;
+        ring.publish();
+
+        assertSame(first, ring.take());
+        ring.release();
+        assertSame(first, ring.claim());
+        first[0] = 3;
+        ring.publish();
+        ring.close();
+
+        assertEquals(2, ring.take()[0]);
+        ring.release();
+        assertEquals(3, ring.take()[0]);
+        ring.release();
+        assertNull(ring.take());
+    }
+
+    @Test
+    void consumerSeesEveryValueOfTheProducer() throws InterruptedException {
+        RingBuffer<long[]> ring = new RingBuffer<>(4, () -> new long[1]);
+        int count = 100_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                ring.claim()[0] = i;
+                ring.publish();
+            }
+            ring.close();
+        });
+        producer.start();
+
+        List<Long> values = new ArrayList<>();
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            long[] slot;
+            while ((slot = ring.take()) != null) {
+                values.add(slot[0]);
+                ring.release();
+            }
+        });
+        producer.join();
+        assertEquals(count, values.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, values.get(i));
+        }
+    }
+
+    @Test
+    void abortWakesUpAWaitingProducer() throws InterruptedException {
+        RingBuffer<int[]> ring = new RingBuffer<>(1, () -> new int[1]);
+        ring.claim();
+        ring.publish();
+        AtomicReference<int[]> claimed = new AtomicReference<>(new int[1]);
+        Thread producer = new Thread(() -> claimed.set(ring.claim()));
+        producer.start();
+
+        ring.abort();
+        producer.join(TIMEOUT.toMillis());
+        assertNull(claimed.get());
+        assertNull(ring.take());
+    }
+
+    @Test
+    void abortWakesUpAWaitingConsumer() throws InterruptedException {
+        RingBuffer<int[]> ring = new RingBuffer<>(1, () -> new int[1]);
+        AtomicReference<int[]> taken = new AtomicReference<>(new int[1]);
+        Thread consumer = new Thread(() -> taken.set(ring.take()));
+        consumer.start();
+
+        ring.abort();
+        consumer.join(TIMEOUT.toMillis());
+        assertNull(taken.get());
+    }
+}
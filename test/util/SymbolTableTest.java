@@ -0,0 +1,41 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SymbolTableTest {
+    @Test
+    void givesDenseSymbolsInTheOrderNamesAreAdded() {
+        SymbolTable table = new SymbolTable();
+        assertEquals(0, table.intern("a"));
+        assertEquals(1, table.intern("b"));
+        assertEquals(0, table.intern("a"));
+        assertEquals(2, table.intern(""));
+        assertEquals(3, table.size());
+        assertEquals("b", table.name(1));
+    }
+
+    @Test
+    void findsOnlyAddedNames() {
+        SymbolTable table = new SymbolTable();
+        table.intern("a");
+        assertEquals(0, table.find("a"));
+        assertEquals(-1, table.find("b"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void keepsSymbolsWhenGrowing() {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, table.intern("user-" + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, table.find("user-" + i));
+            assertEquals("user-" + i, table.name(i));
+        }
+        assertEquals(-1, table.find("user-100000"));
+        assertEquals(100_000, table.size());
+    }
+}
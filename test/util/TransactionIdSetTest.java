@@ -0,0 +1,77 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionIdSetTest {
+    @Test
+    void addsEveryIdOnce() {
+        TransactionIdSet ids = new TransactionIdSet();
+        String uuid = "7b2cce17-958a-3855-e54e-1ad1f4cfd336";
+        assertTrue(ids.add(uuid));
+        assertFalse(ids.add(uuid));
+        assertTrue(ids.add("tx-1"));
+        assertFalse(ids.add("tx-1"));
+        assertTrue(ids.contains(uuid));
+        assertTrue(ids.contains("tx-1"));
+        assertFalse(ids.contains("tx-2"));
+        assertEquals(2, ids.size());
+    }
+
+    @Test
+    void keepsIdsThatAreNotCanonicalUuidsApart() {
+        TransactionIdSet ids = new TransactionIdSet();
+        String uuid = "7b2cce17-958a-3855-e54e-1ad1f4cfd336";
+        assertTrue(ids.add(uuid));
+        assertTrue(ids.add(uuid.toUpperCase()));
+        assertTrue(ids.add(uuid.replace('-', '_')));
+        assertFalse(ids.contains("7b2cce17-958a-3855-e54e-1ad1f4cfd337"));
+        assertEquals(3, ids.size());
+    }
+
+    @Test
+    void growsPastItsExpectedSize() {
+        Random random = new Random(42);
+        Set<String> expected = new HashSet<>();
+        TransactionIdSet ids = new TransactionIdSet(4);
+        for (int i = 0; i < 100_000; i++) {
+            String id = new UUID(random.nextLong(), random.nextLong()).toString();
+            assertEquals(expected.add(id), ids.add(id));
+        }
+        assertEquals(expected.size(), ids.size());
+        for (String id : expected) {
+            assertTrue(ids.contains(id));
+        }
+        assertFalse(ids.contains(new UUID(random.nextLong(), random.nextLong()).toString()));
+    }
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        TransactionIdSet ids = new TransactionIdSet();
+        ids.add("7b2cce17-958a-3855-e54e-1ad1f4cfd336");
+        ids.add("63a522e3-5ecf-615d-3331-824728333e0e");
+        ids.add("tx-1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ids.writeTo(new DataOutputStream(bytes));
+
+        TransactionIdSet read = TransactionIdSet.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(3, read.size());
+        assertTrue(read.contains("7b2cce17-958a-3855-e54e-1ad1f4cfd336"));
+        assertTrue(read.contains("63a522e3-5ecf-615d-3331-824728333e0e"));
+        assertTrue(read.contains("tx-1"));
+        assertFalse(read.add("tx-1"));
+    }
+}